@@ -0,0 +1,82 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice;
+
+import com.mongodb.MongoClient;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import io.barracks.authorizationservice.model.PasswordResetToken;
+import io.barracks.authorizationservice.model.User;
+import io.barracks.authorizationservice.repository.*;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.io.IOException;
+
+public class EmbeddedMongo implements AutoCloseable {
+
+    private final MongodExecutable executable;
+    private final MongoClient client;
+    private final MongoTemplate template;
+    private final MongoRepositoryFactory repositoryFactory;
+
+    public EmbeddedMongo() throws IOException {
+        final int port = Network.getFreeServerPort();
+        executable = MongodStarter.getDefaultInstance().prepare(new MongodConfigBuilder()
+                .version(Version.Main.V3_2)
+                .net(new Net(port, Network.localhostIsIPv6()))
+                .build());
+        executable.start();
+        client = new MongoClient("localhost", port);
+        template = new MongoTemplate(client, "benchmark");
+        template.indexOps(User.class).ensureIndex(new Index("email", Sort.Direction.ASC).unique());
+        template.indexOps(User.class).ensureIndex(new Index("apiKey", Sort.Direction.ASC).unique());
+        template.indexOps(PasswordResetToken.class).ensureIndex(new Index("token", Sort.Direction.ASC).unique());
+        repositoryFactory = new MongoRepositoryFactory(template);
+    }
+
+    public MongoTemplate getTemplate() {
+        return template;
+    }
+
+    public UserRepository userRepository() {
+        return repositoryFactory.getRepository(UserRepository.class, new UserRepositoryImpl(template));
+    }
+
+    public PasswordResetTokenRepository passwordResetTokenRepository() {
+        return repositoryFactory.getRepository(PasswordResetTokenRepository.class, new PasswordResetTokenRepositoryImpl(template));
+    }
+
+    @Override
+    public void close() {
+        client.close();
+        executable.stop();
+    }
+}
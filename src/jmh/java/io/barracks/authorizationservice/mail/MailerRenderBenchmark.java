@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.mail;
+
+import com.github.jknack.handlebars.Handlebars;
+import io.barracks.authorizationservice.mail.util.UrlHelper;
+import io.barracks.authorizationservice.model.PasswordResetToken;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MailerRenderBenchmark {
+
+    private PasswordResetMailer mailer;
+    private Handlebars handlebars;
+    private HandleBarTemplateContext<PasswordResetToken> context;
+
+    @Setup
+    public void setUp() {
+        mailer = new PasswordResetMailer();
+        mailer.compileTemplates();
+        handlebars = new Handlebars();
+        handlebars.registerHelper(UrlHelper.NAME, new UrlHelper());
+        final PasswordResetToken token = PasswordResetToken.builder()
+                .token(UUID.randomUUID().toString())
+                .userEmail("benchmark@barracks.io")
+                .expiryDate(new Date())
+                .build();
+        context = new HandleBarTemplateContext<>(token, "app.barracks.io");
+    }
+
+    @Benchmark
+    public String renderPrecompiled() throws IOException {
+        return mailer.getHtmlContent(context) + mailer.getTextContent(context);
+    }
+
+    @Benchmark
+    public String compileAndRender() throws IOException {
+        final String folder = Mailer.TEMPLATES_EMAILS_BASE_FOLDER + PasswordResetMailer.class.getSimpleName();
+        return handlebars.compile(folder + "/html").apply(context) + handlebars.compile(folder + "/text").apply(context);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.manager;
+
+import io.barracks.authorizationservice.EmbeddedMongo;
+import io.barracks.authorizationservice.cache.AuthenticationCache;
+import io.barracks.authorizationservice.cache.CacheInvalidationBus;
+import io.barracks.authorizationservice.metrics.AuthenticationMetrics;
+import io.barracks.authorizationservice.model.PasswordResetToken;
+import io.barracks.authorizationservice.model.User;
+import io.barracks.authorizationservice.model.UserStatus;
+import io.barracks.authorizationservice.repository.PasswordResetTokenRepository;
+import io.barracks.authorizationservice.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConfirmResetPasswordBenchmark {
+
+    private static final String EMAIL = "benchmark@barracks.io";
+
+    private EmbeddedMongo mongo;
+    private UserRepository userRepository;
+    private PasswordResetTokenRepository passwordResetTokenRepository;
+    private PasswordEncoder passwordEncoder;
+    private UserManager userManager;
+    private AuthenticationCache authenticationCache;
+
+    @Setup
+    public void setUp() throws IOException {
+        mongo = new EmbeddedMongo();
+        userRepository = mongo.userRepository();
+        passwordResetTokenRepository = mongo.passwordResetTokenRepository();
+        passwordEncoder = NoOpPasswordEncoder.getInstance();
+        userManager = new UserManager();
+        ReflectionTestUtils.setField(userManager, "userRepository", userRepository);
+        ReflectionTestUtils.setField(userManager, "passwordResetTokenRepository", passwordResetTokenRepository);
+        ReflectionTestUtils.setField(userManager, "passwordEncoder", passwordEncoder);
+        authenticationCache = new AuthenticationCache(userRepository, null, new CacheInvalidationBus(null, false, 1000L), 5000L, 30000L, 300000L, 10000, 1);
+        ReflectionTestUtils.setField(userManager, "authenticationCache", authenticationCache);
+        ReflectionTestUtils.setField(userManager, "authenticationMetrics", new AuthenticationMetrics(60000));
+        userRepository.save(User.builder()
+                .firstName("Bench")
+                .lastName("Mark")
+                .email(EMAIL)
+                .apiKey(UUID.randomUUID().toString())
+                .status(UserStatus.ACTIVE)
+                .build());
+    }
+
+    @TearDown
+    public void tearDown() {
+        authenticationCache.stop();
+        mongo.close();
+    }
+
+    @State(Scope.Thread)
+    public static class IssuedToken {
+        private String value;
+
+        @Setup(Level.Invocation)
+        public void issue(ConfirmResetPasswordBenchmark benchmark) {
+            final Date now = new Date();
+            value = UUID.randomUUID().toString();
+            benchmark.passwordResetTokenRepository.insert(PasswordResetToken.builder()
+                    .token(value)
+                    .userEmail(EMAIL)
+                    .creationDate(now)
+                    .expiryDate(new Date(now.getTime() + TimeUnit.HOURS.toMillis(24)))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public void consumeAndResetPassword(IssuedToken token) {
+        userManager.confirmResetPassword(token.value, "password");
+    }
+
+    @Benchmark
+    public void sequentialLookupsAndUpdates(IssuedToken token) {
+        final PasswordResetToken passwordResetToken = passwordResetTokenRepository.findByToken(token.value)
+                .orElseThrow(IllegalStateException::new);
+        if (passwordResetToken.getExpiryDate().after(new Date())) {
+            final User user = userRepository.findByEmail(passwordResetToken.getUserEmail())
+                    .orElseThrow(IllegalStateException::new);
+            userRepository.updateUserPassword(user.getId(), passwordEncoder.encode("password"));
+            if (UserStatus.EMAIL_VERIFICATION_PENDING == user.getStatus()) {
+                userRepository.updateUserStatus(user.getId(), UserStatus.SUBSCRIPTION_PENDING);
+            }
+            passwordResetTokenRepository.save(passwordResetToken.toBuilder().expiryDate(new Date()).build());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private User user;
+    private Token token;
+    private String userJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        user = User.builder()
+                .id(UUID.randomUUID().toString())
+                .firstName("Bench")
+                .lastName("Mark")
+                .email("benchmark@barracks.io")
+                .encryptedPassword("encryptedPassword")
+                .apiKey(UUID.randomUUID().toString())
+                .status(UserStatus.ACTIVE)
+                .company("Barracks")
+                .phone("0123456789")
+                .build();
+        token = Token.builder()
+                .id(UUID.randomUUID().toString())
+                .userId(user.getId())
+                .label("benchmark")
+                .value(UUID.randomUUID().toString())
+                .startDate(new Date())
+                .build();
+        // Statuses are written but never read, a registration body has none
+        userJson = objectMapper.writeValueAsString(user.toBuilder().status(null).build());
+    }
+
+    @Benchmark
+    public String writeUser() throws IOException {
+        return objectMapper.writeValueAsString(user);
+    }
+
+    @Benchmark
+    public String writeToken() throws IOException {
+        return objectMapper.writeValueAsString(token);
+    }
+
+    @Benchmark
+    public User readUser() throws IOException {
+        return objectMapper.readValue(userJson, User.class);
+    }
+}
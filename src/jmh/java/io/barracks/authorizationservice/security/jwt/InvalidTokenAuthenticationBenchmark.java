@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.security.jwt;
+
+import io.barracks.authorizationservice.audit.AuditLog;
+import io.barracks.authorizationservice.exception.UserNotFoundException;
+import io.barracks.authorizationservice.manager.TokenManager;
+import io.barracks.authorizationservice.manager.TokenUsageRecorder;
+import io.barracks.authorizationservice.manager.UserManager;
+import io.barracks.authorizationservice.metrics.AuthenticationMetrics;
+import io.barracks.authorizationservice.model.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InvalidTokenAuthenticationBenchmark {
+
+    private static final String AUTH_HEADER_NAME = "X-AUTH-TOKEN";
+
+    @Param({"missing", "malformed", "badSignature", "unknownUser"})
+    private String scenario;
+
+    private StatelessAuthenticationFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private final FilterChain chain = (request, response) -> {
+    };
+
+    @Setup
+    public void setUp() {
+        final TokenHandler tokenHandler = new TokenHandler("benchmarkSecret");
+        final TokenManager tokenManager = new TokenManager(tokenHandler, null, null);
+        final UserManager userManager = new UserManager() {
+            @Override
+            public User getCachedUserByEmail(String email) {
+                throw new UserNotFoundException();
+            }
+        };
+        filter = new StatelessAuthenticationFilter(
+                new TokenAuthenticationService(tokenManager, userManager, new TokenUsageRecorder(null, 0), new AuthenticationMetrics(60000)),
+                new AuditLog(null, 8192, 500, 200, 1.0, 1)
+        );
+        request = new MockHttpServletRequest();
+        response = new MockHttpServletResponse();
+        switch (scenario) {
+            case "malformed":
+                request.addHeader(AUTH_HEADER_NAME, "definitely-not-a-jwt");
+                break;
+            case "badSignature":
+                request.addHeader(AUTH_HEADER_NAME, new TokenHandler("anotherSecret").createTokenForEmail("attacker@barracks.io"));
+                break;
+            case "unknownUser":
+                request.addHeader(AUTH_HEADER_NAME, tokenHandler.createTokenForEmail("unknown@barracks.io"));
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Benchmark
+    public void authenticate() throws Exception {
+        filter.doFilter(request, response, chain);
+    }
+}
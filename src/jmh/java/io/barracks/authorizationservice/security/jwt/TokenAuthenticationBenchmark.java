@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.security.jwt;
+
+import io.barracks.authorizationservice.manager.TokenManager;
+import io.barracks.authorizationservice.manager.TokenUsageRecorder;
+import io.barracks.authorizationservice.manager.UserManager;
+import io.barracks.authorizationservice.metrics.AuthenticationMetrics;
+import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.Authentication;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TokenAuthenticationBenchmark {
+
+    private static final String AUTH_HEADER_NAME = "X-AUTH-TOKEN";
+    private static final String EMAIL = "benchmark@barracks.io";
+
+    @Param({"sessionToken", "apiToken"})
+    private String scenario;
+
+    private TokenAuthenticationService service;
+    private MockHttpServletRequest request;
+    private String token;
+    private Date expiration;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        final TokenHandler tokenHandler = new TokenHandler("benchmarkSecret");
+        user = User.builder().id(UUID.randomUUID().toString()).email(EMAIL).build();
+        expiration = "sessionToken".equals(scenario) ? new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)) : null;
+        token = tokenHandler.createTokenForEmail(EMAIL, expiration);
+        final Token apiToken = Token.builder().id(UUID.randomUUID().toString()).userId(user.getId()).value(token).build();
+        final TokenManager tokenManager = new TokenManager(tokenHandler, null, null) {
+            @Override
+            public Token getCachedTokenByValue(String tokenValue) {
+                return apiToken;
+            }
+        };
+        final UserManager userManager = new UserManager() {
+            @Override
+            public User getCachedUserByEmail(String email) {
+                return user;
+            }
+        };
+        service = new TokenAuthenticationService(tokenManager, userManager, new TokenUsageRecorder(null, 0), new AuthenticationMetrics(60000));
+        request = new MockHttpServletRequest();
+        request.addHeader(AUTH_HEADER_NAME, token);
+    }
+
+    @Benchmark
+    public Authentication getAuthentication() {
+        return service.getAuthentication(request);
+    }
+
+    @Benchmark
+    public boolean isValidToken() {
+        return service.isValidToken(token, expiration, user);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.security.jwt;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TokenHandlerBenchmark {
+
+    private static final String EMAIL = "benchmark@barracks.io";
+
+    private TokenHandler tokenHandler;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        tokenHandler = new TokenHandler("benchmarkSecret");
+        token = tokenHandler.createTokenForEmail(EMAIL);
+    }
+
+    @Benchmark
+    public String createTokenForEmail() {
+        return tokenHandler.createTokenForEmail(EMAIL);
+    }
+
+    @Benchmark
+    public String parseEmailFromToken() {
+        return tokenHandler.parseEmailFromToken(token);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String parseEmailFromTokenContended() {
+        return tokenHandler.parseEmailFromToken(token);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.load;
+
+import io.barracks.authorizationservice.model.PasswordResetToken;
+import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.User;
+import io.barracks.authorizationservice.security.jwt.TokenHandler;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "logging.level.io.barracks=INFO",
+                "io.barracks.authorizationservice.auth_cache.snapshot_file="
+        }
+)
+public class AuthenticationLoadTest {
+
+    private static final int RATE = Integer.getInteger("loadtest.rate", 500);
+    private static final int THREADS = Integer.getInteger("loadtest.threads", 64);
+    private static final long WARM_UP_MILLIS = Long.getLong("loadtest.warm_up_ms", 15000);
+    private static final long DURATION_MILLIS = Long.getLong("loadtest.duration_ms", 60000);
+    private static final String MIX = System.getProperty("loadtest.mix",
+            "device_authentication:60,me_with_session_token:15,me_with_api_token:15,token_listing:8,login:2");
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("loadtest.max_error_rate", "0.001"));
+    private static final double MIN_THROUGHPUT_RATIO = Double.parseDouble(System.getProperty("loadtest.min_throughput_ratio", "0.95"));
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private TokenHandler tokenHandler;
+
+    @Test
+    public void mixedWorkload_shouldStayWithinThresholds() throws Exception {
+        // Given
+        mongoOperations.remove(new Query(), User.class);
+        mongoOperations.remove(new Query(), Token.class);
+        mongoOperations.remove(new Query(), PasswordResetToken.class);
+        final LoadDataset dataset = new DatasetGenerator(mongoOperations, passwordEncoder, tokenHandler)
+                .generate(DatasetSpec.fromSystemProperties());
+        final LoadGenerator generator = new LoadGenerator("http://localhost:" + port, dataset, parseMix(MIX), RATE, THREADS);
+
+        // When
+        final LoadReport report = generator.run(WARM_UP_MILLIS, DURATION_MILLIS);
+
+        // Then
+        report.print(System.out);
+        System.out.printf("%d peak threads, %d MB heap used%n",
+                ManagementFactory.getThreadMXBean().getPeakThreadCount(),
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20);
+        report.writeHistograms(new File("build/reports/loadtest"));
+        final SoftAssertions softly = new SoftAssertions();
+        softly.assertThat(report.getThroughput()).as("requests/s").isGreaterThanOrEqualTo(RATE * MIN_THROUGHPUT_RATIO);
+        softly.assertThat((double) report.getTotalErrors()).as("errors").isLessThanOrEqualTo(report.getTotalRequests() * MAX_ERROR_RATE);
+        for (Operation operation : Operation.values()) {
+            if (report.getRequests(operation) > 0) {
+                softly.assertThat(report.getP99Millis(operation)).as(operation + " p99 ms").isLessThanOrEqualTo(operation.getMaxP99Millis());
+            }
+        }
+        softly.assertAll();
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        final Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            final String[] parts = entry.split(":");
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.load;
+
+import com.mongodb.MongoClientURI;
+import io.barracks.authorizationservice.model.PasswordResetToken;
+import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.User;
+import io.barracks.authorizationservice.model.UserStatus;
+import io.barracks.authorizationservice.security.jwt.TokenHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexCreator;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk loads users, tokens and password reset tokens shaped by a {@link DatasetSpec}. Batches of users are generated
+ * and inserted in parallel with unordered bulk writes.
+ */
+public class DatasetGenerator {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final MongoOperations operations;
+    private final PasswordEncoder passwordEncoder;
+    private final TokenHandler tokenHandler;
+    private final AtomicLong insertedTokens = new AtomicLong();
+
+    public DatasetGenerator(MongoOperations operations, PasswordEncoder passwordEncoder, TokenHandler tokenHandler) {
+        this.operations = operations;
+        this.passwordEncoder = passwordEncoder;
+        this.tokenHandler = tokenHandler;
+    }
+
+    public LoadDataset generate(DatasetSpec spec) throws Exception {
+        final long start = System.nanoTime();
+        // Hashing once keeps generation fast, logins still pay the full BCrypt verification
+        final String encryptedPassword = passwordEncoder.encode(LoadDataset.PASSWORD);
+        final String[][] apiTokens = new String[spec.getTrackedUsers()][];
+        final ExecutorService executor = Executors.newFixedThreadPool(spec.getThreads());
+        try {
+            final List<Future<?>> batches = new ArrayList<>();
+            for (int from = 0; from < spec.getUsers(); from += spec.getBatchSize()) {
+                final int first = from;
+                final int last = Math.min(spec.getUsers(), from + spec.getBatchSize());
+                batches.add(executor.submit(() -> insertUsers(spec, first, last, encryptedPassword, apiTokens)));
+            }
+            for (int from = 0; from < spec.getPasswordResetTokens(); from += spec.getBatchSize()) {
+                final int first = from;
+                final int last = Math.min(spec.getPasswordResetTokens(), from + spec.getBatchSize());
+                batches.add(executor.submit(() -> insertPasswordResetTokens(spec, first, last)));
+            }
+            for (Future<?> batch : batches) {
+                batch.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info("Inserted {} users, {} tokens and {} password reset tokens in {} ms",
+                spec.getUsers(), insertedTokens.get(), spec.getPasswordResetTokens(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return new LoadDataset(spec, tokenHandler, apiTokens);
+    }
+
+    private void insertUsers(DatasetSpec spec, int first, int last, String encryptedPassword, String[][] apiTokens) {
+        final Random random = new Random(spec.getSeed() + first);
+        final long now = System.currentTimeMillis();
+        final List<User> users = new ArrayList<>(last - first);
+        final List<Token> tokens = new ArrayList<>();
+        for (int user = first; user < last; user++) {
+            users.add(User.builder()
+                    .id(spec.userId(user))
+                    .firstName("Load")
+                    .lastName("User " + user)
+                    .email(spec.email(user))
+                    .encryptedPassword(encryptedPassword)
+                    .apiKey(spec.apiKey(user))
+                    .status(UserStatus.ACTIVE)
+                    .build());
+            final int tokenCount = spec.tokenCount(user);
+            final List<String> liveTokens = new ArrayList<>(tokenCount);
+            for (int i = 0; i < tokenCount; i++) {
+                final String value = tokenHandler.createTokenForEmail(spec.email(user));
+                // The first token of a user stays live so that every user can authenticate with an api token
+                final boolean revoked = i > 0 && random.nextDouble() < spec.getRevokedRatio();
+                final long age = (long) (TimeUnit.DAYS.toMillis(30) * random.nextDouble() / spec.weight(user) / spec.getUsers());
+                tokens.add(Token.builder()
+                        .id(UUID.randomUUID().toString())
+                        .userId(spec.userId(user))
+                        .label("token " + i)
+                        .value(value)
+                        .startDate(new Date(now - TimeUnit.DAYS.toMillis(30)))
+                        .revoked(revoked)
+                        .lastUsed(new Date(now - Math.min(age, TimeUnit.DAYS.toMillis(30))))
+                        .useCount((long) (1000 * spec.weight(user) * random.nextDouble()))
+                        .build());
+                if (!revoked) {
+                    liveTokens.add(value);
+                }
+            }
+            if (user < apiTokens.length) {
+                apiTokens[user] = liveTokens.toArray(new String[liveTokens.size()]);
+            }
+        }
+        operations.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class).insert(users).execute();
+        operations.bulkOps(BulkOperations.BulkMode.UNORDERED, Token.class).insert(tokens).execute();
+        insertedTokens.addAndGet(tokens.size());
+    }
+
+    private void insertPasswordResetTokens(DatasetSpec spec, int first, int last) {
+        final Random random = new Random(~spec.getSeed() + first);
+        final long now = System.currentTimeMillis();
+        final List<PasswordResetToken> resetTokens = new ArrayList<>(last - first);
+        for (int i = first; i < last; i++) {
+            final long creation = now - (long) (TimeUnit.DAYS.toMillis(7) * random.nextDouble());
+            resetTokens.add(PasswordResetToken.builder()
+                    .id(UUID.randomUUID().toString())
+                    .token(UUID.randomUUID().toString())
+                    .userEmail(spec.email(random.nextInt(spec.getUsers())))
+                    .creationDate(new Date(creation))
+                    .expiryDate(new Date(creation + TimeUnit.DAYS.toMillis(1)))
+                    .build());
+        }
+        operations.bulkOps(BulkOperations.BulkMode.UNORDERED, PasswordResetToken.class).insert(resetTokens).execute();
+    }
+
+    /**
+     * Loads a dataset into the database of dataset.mongodb_uri. dataset.secret must be the service's JWT secret for the
+     * generated tokens to be accepted.
+     */
+    public static void main(String[] args) throws Exception {
+        final String secret = System.getProperty("dataset.secret");
+        if (secret == null) {
+            throw new IllegalArgumentException("dataset.secret must be set to the service's JWT secret");
+        }
+        final SimpleMongoDbFactory factory = new SimpleMongoDbFactory(
+                new MongoClientURI(System.getProperty("dataset.mongodb_uri", "mongodb://localhost:27017/barracks"))
+        );
+        try {
+            final MongoMappingContext mappingContext = new MongoMappingContext();
+            mappingContext.setInitialEntitySet(new HashSet<>(Arrays.asList(User.class, Token.class, PasswordResetToken.class)));
+            mappingContext.initialize();
+            new MongoPersistentEntityIndexCreator(mappingContext, factory);
+            new DatasetGenerator(new MongoTemplate(factory), new BCryptPasswordEncoder(), new TokenHandler(secret))
+                    .generate(DatasetSpec.fromSystemProperties());
+        } finally {
+            factory.destroy();
+        }
+    }
+
+}
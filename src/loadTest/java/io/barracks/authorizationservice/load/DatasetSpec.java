@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.load;
+
+import java.util.UUID;
+
+/**
+ * Shape of a synthetic dataset. Users are derived from their index so that their ids, emails and api keys never need
+ * to be kept in memory; low indexes are the hot users, which own more tokens and receive more traffic.
+ */
+public class DatasetSpec {
+
+    private static final String PREFIX = "dataset.";
+
+    private final long seed;
+    private final int users;
+    private final int minTokensPerUser;
+    private final int maxTokensPerUser;
+    private final double hotUserSkew;
+    private final double revokedRatio;
+    private final int passwordResetTokens;
+    private final int trackedUsers;
+    private final int threads;
+    private final int batchSize;
+
+    private DatasetSpec() {
+        this.seed = Long.getLong(PREFIX + "seed", 42L);
+        this.users = Integer.getInteger(PREFIX + "users", 10000);
+        this.minTokensPerUser = Integer.getInteger(PREFIX + "min_tokens_per_user", 1);
+        this.maxTokensPerUser = Integer.getInteger(PREFIX + "max_tokens_per_user", 200);
+        this.hotUserSkew = Double.parseDouble(System.getProperty(PREFIX + "hot_user_skew", "1.0"));
+        this.revokedRatio = Double.parseDouble(System.getProperty(PREFIX + "revoked_ratio", "0.1"));
+        this.passwordResetTokens = Integer.getInteger(PREFIX + "password_reset_tokens", users / 100);
+        this.trackedUsers = Math.min(users, Integer.getInteger(PREFIX + "tracked_users", 100000));
+        this.threads = Integer.getInteger(PREFIX + "threads", Runtime.getRuntime().availableProcessors());
+        this.batchSize = Integer.getInteger(PREFIX + "batch_size", 1000);
+    }
+
+    public static DatasetSpec fromSystemProperties() {
+        return new DatasetSpec();
+    }
+
+    public String userId(int user) {
+        return new UUID(seed, user).toString();
+    }
+
+    public String email(int user) {
+        return "user-" + user + "@load.barracks.io";
+    }
+
+    public String apiKey(int user) {
+        return new UUID(~seed, user).toString();
+    }
+
+    public int tokenCount(int user) {
+        return Math.max(minTokensPerUser, (int) Math.round(maxTokensPerUser * weight(user)));
+    }
+
+    public double weight(int user) {
+        return Math.pow(user + 1, -hotUserSkew);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public double getRevokedRatio() {
+        return revokedRatio;
+    }
+
+    public int getPasswordResetTokens() {
+        return passwordResetTokens;
+    }
+
+    /**
+     * Users whose token values are kept for the load generator, the hottest ones since they are the most requested.
+     */
+    public int getTrackedUsers() {
+        return trackedUsers;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.load;
+
+import io.barracks.authorizationservice.security.jwt.TokenHandler;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class LoadDataset {
+
+    public static final String PASSWORD = "LoadTestPassword1";
+
+    private final DatasetSpec spec;
+    private final TokenHandler tokenHandler;
+    private final String[][] apiTokens;
+    private final String[] sessionTokens;
+    private final double[] cumulativeWeights;
+    private final Date sessionExpiration = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+
+    LoadDataset(DatasetSpec spec, TokenHandler tokenHandler, String[][] apiTokens) {
+        this.spec = spec;
+        this.tokenHandler = tokenHandler;
+        this.apiTokens = apiTokens;
+        this.sessionTokens = new String[apiTokens.length];
+        this.cumulativeWeights = new double[apiTokens.length];
+        double total = 0;
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            total += spec.weight(i);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    /**
+     * Picks one of the tracked users, the hottest ones more often.
+     */
+    public int pickUser(Random random) {
+        final double target = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        final int index = Arrays.binarySearch(cumulativeWeights, target);
+        return Math.min(index >= 0 ? index : -index - 1, cumulativeWeights.length - 1);
+    }
+
+    public String email(int user) {
+        return spec.email(user);
+    }
+
+    public String apiKey(int user) {
+        return spec.apiKey(user);
+    }
+
+    public String apiToken(int user, Random random) {
+        final String[] tokens = apiTokens[user];
+        return tokens[random.nextInt(tokens.length)];
+    }
+
+    public String sessionToken(int user) {
+        // Racing threads may both sign a token, either one is valid
+        String token = sessionTokens[user];
+        if (token == null) {
+            token = tokenHandler.createTokenForEmail(spec.email(user), sessionExpiration);
+            sessionTokens[user] = token;
+        }
+        return token;
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a fixed rate whatever the response times are, and measures each latency from the time the request
+ * was scheduled rather than from the time it was sent. A stalled server therefore shows up in the percentiles instead
+ * of silently slowing the generator down (coordinated omission).
+ */
+public class LoadGenerator {
+
+    private static final String AUTH_HEADER_NAME = "X-Auth-Token";
+
+    private final String baseUrl;
+    private final LoadDataset dataset;
+    private final Operation[] schedule;
+    private final int threads;
+    private final long intervalNanos;
+
+    public LoadGenerator(String baseUrl, LoadDataset dataset, Map<Operation, Integer> mix, int requestsPerSecond, int threads) {
+        this.baseUrl = baseUrl;
+        this.dataset = dataset;
+        this.schedule = mix.entrySet().stream()
+                .flatMap(entry -> Collections.nCopies(entry.getValue(), entry.getKey()).stream())
+                .toArray(Operation[]::new);
+        this.threads = threads;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) * threads / requestsPerSecond;
+    }
+
+    public LoadReport run(long warmUpMillis, long durationMillis) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final long start = System.nanoTime();
+            final long measureFrom = start + TimeUnit.MILLISECONDS.toNanos(warmUpMillis);
+            final long end = measureFrom + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+            final List<Future<LoadReport>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                final long offset = intervalNanos * i / threads;
+                final Random random = new Random(i);
+                workers.add(executor.submit(() -> drive(start + offset, measureFrom, end, random)));
+            }
+            final LoadReport report = new LoadReport(measureFrom);
+            for (Future<LoadReport> worker : workers) {
+                report.add(worker.get());
+            }
+            return report;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private LoadReport drive(long firstRequest, long measureFrom, long end, Random random) {
+        final LoadReport report = new LoadReport(measureFrom);
+        for (long scheduled = firstRequest; scheduled < end; scheduled += intervalNanos) {
+            final long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            final Operation operation = schedule[random.nextInt(schedule.length)];
+            final Request request = operation.next(dataset, random);
+            final long sent = System.nanoTime();
+            final boolean success = send(request);
+            final long received = System.nanoTime();
+            if (scheduled >= measureFrom) {
+                report.record(operation, received - scheduled, received - sent, success, received);
+            }
+        }
+        return report;
+    }
+
+    private boolean send(Request request) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + request.getPath()).openConnection();
+            connection.setRequestMethod(request.getMethod());
+            if (request.getAuthToken() != null) {
+                connection.setRequestProperty(AUTH_HEADER_NAME, request.getAuthToken());
+            }
+            if (request.getBody() != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(request.getBody());
+                }
+            }
+            final int status = connection.getResponseCode();
+            // Draining the body lets the connection go back to the keep-alive pool
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (in != null) {
+                    final byte[] buffer = new byte[4096];
+                    while (in.read(buffer) >= 0) {
+                        // drain
+                    }
+                }
+            }
+            return status < 400;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+}
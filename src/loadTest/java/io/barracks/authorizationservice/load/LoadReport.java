@@ -0,0 +1,132 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class LoadReport {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final long measureFromNanos;
+    private long lastResponseNanos;
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Histogram> serviceTimes = new EnumMap<>(Operation.class);
+    private final Map<Operation, long[]> errors = new EnumMap<>(Operation.class);
+
+    LoadReport(long measureFromNanos) {
+        this.measureFromNanos = measureFromNanos;
+        this.lastResponseNanos = measureFromNanos;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new Histogram(HIGHEST_TRACKABLE_MICROS, 3));
+            serviceTimes.put(operation, new Histogram(HIGHEST_TRACKABLE_MICROS, 3));
+            errors.put(operation, new long[1]);
+        }
+    }
+
+    void record(Operation operation, long latencyNanos, long serviceTimeNanos, boolean success, long receivedNanos) {
+        lastResponseNanos = Math.max(lastResponseNanos, receivedNanos);
+        latencies.get(operation).recordValue(toMicros(latencyNanos));
+        serviceTimes.get(operation).recordValue(toMicros(serviceTimeNanos));
+        if (!success) {
+            errors.get(operation)[0]++;
+        }
+    }
+
+    void add(LoadReport other) {
+        lastResponseNanos = Math.max(lastResponseNanos, other.lastResponseNanos);
+        for (Operation operation : Operation.values()) {
+            latencies.get(operation).add(other.latencies.get(operation));
+            serviceTimes.get(operation).add(other.serviceTimes.get(operation));
+            errors.get(operation)[0] += other.errors.get(operation)[0];
+        }
+    }
+
+    public long getRequests(Operation operation) {
+        return latencies.get(operation).getTotalCount();
+    }
+
+    public long getTotalRequests() {
+        return latencies.values().stream().mapToLong(Histogram::getTotalCount).sum();
+    }
+
+    public long getTotalErrors() {
+        return errors.values().stream().mapToLong(count -> count[0]).sum();
+    }
+
+    /**
+     * Requests per second over the time it took to get every response, a server falling behind the schedule lowers it.
+     */
+    public double getThroughput() {
+        return getTotalRequests() * 1000.0 / Math.max(1, getDurationMillis());
+    }
+
+    public long getDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastResponseNanos - measureFromNanos);
+    }
+
+    public double getP99Millis(Operation operation) {
+        return latencies.get(operation).getValueAtPercentile(99.0) / 1000.0;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%-22s %9s %7s %9s %9s %9s %9s %9s%n", "operation", "requests", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99");
+        for (Operation operation : Operation.values()) {
+            final Histogram latency = latencies.get(operation);
+            if (latency.getTotalCount() > 0) {
+                out.printf("%-22s %9d %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                        operation.name().toLowerCase(),
+                        latency.getTotalCount(),
+                        errors.get(operation)[0],
+                        latency.getValueAtPercentile(50.0) / 1000.0,
+                        latency.getValueAtPercentile(99.0) / 1000.0,
+                        latency.getValueAtPercentile(99.9) / 1000.0,
+                        latency.getMaxValue() / 1000.0,
+                        serviceTimes.get(operation).getValueAtPercentile(99.0) / 1000.0);
+            }
+        }
+        out.printf("%d requests in %d ms, %.1f requests/s, %d errors%n", getTotalRequests(), getDurationMillis(), getThroughput(), getTotalErrors());
+    }
+
+    public void writeHistograms(File directory) throws FileNotFoundException {
+        directory.mkdirs();
+        for (Operation operation : Operation.values()) {
+            try (PrintStream out = new PrintStream(new File(directory, operation.name().toLowerCase() + ".hgrm"))) {
+                latencies.get(operation).outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_TRACKABLE_MICROS);
+    }
+
+}
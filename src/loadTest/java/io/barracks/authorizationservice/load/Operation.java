@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.load;
+
+import java.util.Random;
+
+public enum Operation {
+
+    DEVICE_AUTHENTICATION(50) {
+        @Override
+        Request next(LoadDataset dataset, Random random) {
+            return Request.post("/device/authenticate", null, "{\"apiKey\":\"" + dataset.apiKey(dataset.pickUser(random)) + "\"}");
+        }
+    },
+    ME_WITH_SESSION_TOKEN(50) {
+        @Override
+        Request next(LoadDataset dataset, Random random) {
+            return Request.get("/me", dataset.sessionToken(dataset.pickUser(random)));
+        }
+    },
+    ME_WITH_API_TOKEN(50) {
+        @Override
+        Request next(LoadDataset dataset, Random random) {
+            return Request.get("/me", dataset.apiToken(dataset.pickUser(random), random));
+        }
+    },
+    LOGIN(500) {
+        @Override
+        Request next(LoadDataset dataset, Random random) {
+            return Request.post("/login", null,
+                    "{\"username\":\"" + dataset.email(dataset.pickUser(random)) + "\",\"password\":\"" + LoadDataset.PASSWORD + "\"}");
+        }
+    },
+    TOKEN_LISTING(100) {
+        @Override
+        Request next(LoadDataset dataset, Random random) {
+            return Request.get("/tokens", dataset.sessionToken(dataset.pickUser(random)));
+        }
+    };
+
+    private final long defaultMaxP99Millis;
+
+    Operation(long defaultMaxP99Millis) {
+        this.defaultMaxP99Millis = defaultMaxP99Millis;
+    }
+
+    public long getMaxP99Millis() {
+        return Long.getLong("loadtest.max_p99_ms." + name().toLowerCase(), defaultMaxP99Millis);
+    }
+
+    abstract Request next(LoadDataset dataset, Random random);
+
+}
@@ -0,0 +1,64 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.startup;
+
+import io.barracks.authorizationservice.Application;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StartupTimeTest {
+
+    // Startup time depends on the machine, it is only enforced when a budget is given for it
+    private static final Long MAX_STARTUP_MILLIS = Long.getLong("startup.max_ms");
+
+    @Test
+    public void run_withFastStartupProfile_shouldReportStartupTime() {
+        // Given
+        final SpringApplicationBuilder builder = new SpringApplicationBuilder(Application.class)
+                .profiles("fast-startup")
+                .properties(
+                        "server.port=0",
+                        "io.barracks.authorizationservice.warmup.enabled=false",
+                        "io.barracks.authorizationservice.auth_cache.snapshot_file="
+                );
+        final long start = System.nanoTime();
+
+        // When
+        try (ConfigurableApplicationContext context = builder.run()) {
+            final long startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // Then
+            System.out.println("Startup time with the fast-startup profile: " + startupMillis + " ms");
+            if (MAX_STARTUP_MILLIS != null) {
+                assertThat(startupMillis).isLessThan(MAX_STARTUP_MILLIS);
+            }
+        }
+    }
+
+}
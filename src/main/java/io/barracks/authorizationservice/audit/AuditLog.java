@@ -0,0 +1,159 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.audit;
+
+import io.barracks.authorizationservice.model.AuditEvent;
+import io.barracks.authorizationservice.model.AuditEventType;
+import io.barracks.authorizationservice.repository.AuditEventRepository;
+import io.barracks.authorizationservice.security.jwt.RateLimitedLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+@Component
+public class AuditLog {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final RateLimitedLogger failureLogger = new RateLimitedLogger(logger, 1, 10, TimeUnit.SECONDS);
+
+    private final AuditEventRepository auditEventRepository;
+    private final AuditRingBuffer<AuditEvent> buffer;
+    private final int batchSize;
+    private final long pollIntervalNanos;
+    private final int samplingThreshold;
+    private final int samplingRate;
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    @Autowired
+    public AuditLog(
+            AuditEventRepository auditEventRepository,
+            @Value("${io.barracks.authorizationservice.audit.buffer_capacity:8192}") int bufferCapacity,
+            @Value("${io.barracks.authorizationservice.audit.batch_size:500}") int batchSize,
+            @Value("${io.barracks.authorizationservice.audit.poll_interval_ms:200}") long pollIntervalMillis,
+            @Value("${io.barracks.authorizationservice.audit.sampling_threshold:0.5}") double samplingThreshold,
+            @Value("${io.barracks.authorizationservice.audit.sampling_rate:10}") int samplingRate
+    ) {
+        this.auditEventRepository = auditEventRepository;
+        this.buffer = new AuditRingBuffer<>(bufferCapacity);
+        this.batchSize = batchSize;
+        this.pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(pollIntervalMillis);
+        this.samplingThreshold = (int) (bufferCapacity * samplingThreshold);
+        this.samplingRate = samplingRate;
+    }
+
+    public void record(AuditEventType type, String principal, String remoteAddress) {
+        int weight = 1;
+        if (buffer.size() >= samplingThreshold) {
+            if (ThreadLocalRandom.current().nextInt(samplingRate) != 0) {
+                sampledOut.increment();
+                return;
+            }
+            weight = samplingRate;
+        }
+        final AuditEvent event = AuditEvent.builder()
+                .type(type)
+                .principal(principal)
+                .remoteAddress(remoteAddress)
+                .date(new Date())
+                .weight(weight)
+                .build();
+        if (!buffer.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    public long getSampledOutCount() {
+        return sampledOut.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public int getBacklog() {
+        return buffer.size();
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::run, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        while (write() > 0) {
+            // Flush what is left once the writer is gone
+        }
+    }
+
+    private void run() {
+        while (running) {
+            if (write() == 0) {
+                LockSupport.parkNanos(this, pollIntervalNanos);
+            }
+        }
+    }
+
+    int write() {
+        final List<AuditEvent> batch = new ArrayList<>(batchSize);
+        if (buffer.drainTo(batch, batchSize) == 0) {
+            return 0;
+        }
+        try {
+            auditEventRepository.insert(batch);
+        } catch (DataAccessException e) {
+            dropped.add(batch.size());
+            failureLogger.warn("{} audit events lost: {}", batch.size(), e.getMessage());
+        } catch (RuntimeException e) {
+            // The writer is the only consumer of the buffer, it must outlive a batch that cannot be mapped
+            dropped.add(batch.size());
+            logger.error("{} audit events lost", batch.size(), e);
+        }
+        return batch.size();
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.bulkhead;
+
+import io.barracks.authorizationservice.security.jwt.RateLimitedLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sheds load with a 503 as soon as the in-flight requests exceed the share of the adaptive limit granted to their
+ * priority. Device authentication may use the whole limit and is the only latency signal, being both the hottest and
+ * the most uniform endpoint; BCrypt logins would skew the gradient. Other requests only let the limit recover toward
+ * its maximum when no device traffic arrives.
+ */
+@Component
+public class AdaptiveConcurrencyFilter extends OncePerRequestFilter implements PublicMetrics, Ordered {
+
+    enum Priority {
+        CRITICAL, NORMAL, SHEDDABLE
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final RateLimitedLogger shedLogger = new RateLimitedLogger(logger, 1, 10, TimeUnit.SECONDS);
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+    private final Map<String, Priority> prioritiesByPattern = new LinkedHashMap<>();
+    private final Map<Priority, Double> shares = new EnumMap<>(Priority.class);
+    private final Map<Priority, LongAdder> shed = new EnumMap<>(Priority.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final GradientLimit limit;
+    private final String retryAfterSeconds;
+
+    @Autowired
+    public AdaptiveConcurrencyFilter(
+            @Value("${io.barracks.authorizationservice.concurrency.initial_limit:50}") int initialLimit,
+            @Value("${io.barracks.authorizationservice.concurrency.min_limit:10}") int minLimit,
+            @Value("${io.barracks.authorizationservice.concurrency.max_limit:190}") int maxLimit,
+            @Value("${io.barracks.authorizationservice.concurrency.smoothing:0.2}") double smoothing,
+            @Value("${io.barracks.authorizationservice.concurrency.window_ms:100}") long windowMillis,
+            @Value("${io.barracks.authorizationservice.concurrency.min_rtt_reset_windows:600}") int minRttResetWindows,
+            @Value("${io.barracks.authorizationservice.concurrency.idle_ms:5000}") long idleMillis,
+            @Value("${io.barracks.authorizationservice.concurrency.normal_share:0.9}") double normalShare,
+            @Value("${io.barracks.authorizationservice.concurrency.sheddable_share:0.5}") double sheddableShare,
+            @Value("${io.barracks.authorizationservice.concurrency.retry_after_s:1}") int retryAfterSeconds
+    ) {
+        this(new GradientLimit(initialLimit, minLimit, maxLimit, smoothing, windowMillis, minRttResetWindows, idleMillis), normalShare, sheddableShare, retryAfterSeconds);
+    }
+
+    AdaptiveConcurrencyFilter(GradientLimit limit, double normalShare, double sheddableShare, int retryAfterSeconds) {
+        this.limit = limit;
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+        prioritiesByPattern.put("/device/**", Priority.CRITICAL);
+        prioritiesByPattern.put("/register/**", Priority.SHEDDABLE);
+        prioritiesByPattern.put("/password/**", Priority.SHEDDABLE);
+        prioritiesByPattern.put("/login", Priority.NORMAL);
+        prioritiesByPattern.put("/tokens/**", Priority.NORMAL);
+        prioritiesByPattern.put("/users/**", Priority.NORMAL);
+        prioritiesByPattern.put("/me", Priority.NORMAL);
+        shares.put(Priority.CRITICAL, 1.0);
+        shares.put(Priority.NORMAL, normalShare);
+        shares.put(Priority.SHEDDABLE, sheddableShare);
+        for (Priority priority : Priority.values()) {
+            shed.put(priority, new LongAdder());
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        final Priority priority = priorityFor(request);
+        if (priority == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        final int admitted = inFlight.incrementAndGet();
+        if (admitted > limit.getLimit() * shares.get(priority)) {
+            inFlight.decrementAndGet();
+            shed.get(priority).increment();
+            shedLogger.warn("Shedding {} request from {}", priority, request.getRemoteAddr());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        final Completion completion = new Completion(priority, admitted, System.nanoTime());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(completion);
+            } else {
+                completion.complete();
+            }
+        }
+    }
+
+    Priority priorityFor(HttpServletRequest request) {
+        final String path = urlPathHelper.getPathWithinApplication(request);
+        for (Map.Entry<String, Priority> entry : prioritiesByPattern.entrySet()) {
+            if (pathMatcher.match(entry.getKey(), path)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final Collection<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("concurrency.limit", limit.getLimit()));
+        metrics.add(new Metric<>("concurrency.in_flight", inFlight.get()));
+        metrics.add(new Metric<>("concurrency.min_rtt_us", TimeUnit.NANOSECONDS.toMicros(limit.getMinRttNanos())));
+        metrics.add(new Metric<>("concurrency.rtt_us", TimeUnit.NANOSECONDS.toMicros(limit.getLastRttNanos())));
+        shed.forEach((priority, count) -> metrics.add(new Metric<>("concurrency.shed." + priority.name().toLowerCase(), count.sum())));
+        return metrics;
+    }
+
+    @Override
+    public int getOrder() {
+        return SecurityProperties.DEFAULT_FILTER_ORDER - 20;
+    }
+
+    private class Completion implements AsyncListener {
+        private final Priority priority;
+        private final int admitted;
+        private final long start;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Completion(Priority priority, int admitted, long start) {
+            this.priority = priority;
+            this.admitted = admitted;
+            this.start = start;
+        }
+
+        private void complete() {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            inFlight.decrementAndGet();
+            if (priority == Priority.CRITICAL) {
+                limit.onSample(System.nanoTime() - start, admitted);
+            } else {
+                limit.tick();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            complete();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            complete();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            complete();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+}
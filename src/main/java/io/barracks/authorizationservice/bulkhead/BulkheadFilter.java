@@ -0,0 +1,190 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.bulkhead;
+
+import io.barracks.authorizationservice.security.jwt.RateLimitedLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caps the number of Tomcat workers each endpoint group may hold. It runs ahead of the security filter chain so that
+ * logins, which are handled there, are bulkheaded too. Asynchronous requests keep their permit until they complete.
+ */
+@Component
+public class BulkheadFilter extends OncePerRequestFilter implements PublicMetrics, Ordered {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final RateLimitedLogger rejectionLogger = new RateLimitedLogger(logger, 1, 10, TimeUnit.SECONDS);
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+    private final Map<String, Bulkhead> bulkheadsByPattern = new LinkedHashMap<>();
+    private final String retryAfterSeconds;
+
+    @Autowired
+    public BulkheadFilter(
+            @Value("${io.barracks.authorizationservice.bulkhead.max_wait_ms:500}") long maxWaitMillis,
+            @Value("${io.barracks.authorizationservice.bulkhead.device.max_concurrent:80}") int deviceMaxConcurrent,
+            @Value("${io.barracks.authorizationservice.bulkhead.device.max_queued:40}") int deviceMaxQueued,
+            @Value("${io.barracks.authorizationservice.bulkhead.login.max_concurrent:16}") int loginMaxConcurrent,
+            @Value("${io.barracks.authorizationservice.bulkhead.login.max_queued:16}") int loginMaxQueued,
+            @Value("${io.barracks.authorizationservice.bulkhead.account.max_concurrent:8}") int accountMaxConcurrent,
+            @Value("${io.barracks.authorizationservice.bulkhead.account.max_queued:8}") int accountMaxQueued,
+            @Value("${io.barracks.authorizationservice.bulkhead.management.max_concurrent:16}") int managementMaxConcurrent,
+            @Value("${io.barracks.authorizationservice.bulkhead.management.max_queued:8}") int managementMaxQueued,
+            @Value("${io.barracks.authorizationservice.bulkhead.retry_after_s:1}") int retryAfterSeconds
+    ) {
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+        final Bulkhead device = new Bulkhead("device", deviceMaxConcurrent, deviceMaxQueued, maxWaitMillis);
+        final Bulkhead login = new Bulkhead("login", loginMaxConcurrent, loginMaxQueued, maxWaitMillis);
+        final Bulkhead account = new Bulkhead("account", accountMaxConcurrent, accountMaxQueued, maxWaitMillis);
+        final Bulkhead management = new Bulkhead("management", managementMaxConcurrent, managementMaxQueued, maxWaitMillis);
+        bulkheadsByPattern.put("/device/**", device);
+        bulkheadsByPattern.put("/login", login);
+        bulkheadsByPattern.put("/register/**", account);
+        bulkheadsByPattern.put("/password/**", account);
+        bulkheadsByPattern.put("/tokens/**", management);
+        bulkheadsByPattern.put("/users/**", management);
+        bulkheadsByPattern.put("/me", management);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        final Bulkhead bulkhead = bulkheadFor(request);
+        if (bulkhead == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        final boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        if (!acquired) {
+            rejectionLogger.warn("Bulkhead '{}' is full, rejecting request from {}", bulkhead.getName(), request.getRemoteAddr());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        final Release release = new Release(bulkhead);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(release);
+            } else {
+                release.release();
+            }
+        }
+    }
+
+    Bulkhead bulkheadFor(HttpServletRequest request) {
+        final String path = urlPathHelper.getPathWithinApplication(request);
+        for (Map.Entry<String, Bulkhead> entry : bulkheadsByPattern.entrySet()) {
+            if (pathMatcher.match(entry.getKey(), path)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final Collection<Metric<?>> metrics = new ArrayList<>();
+        bulkheadsByPattern.values().stream().distinct().forEach(bulkhead -> metrics.addAll(bulkhead.metrics()));
+        return metrics;
+    }
+
+    @Override
+    public int getOrder() {
+        return SecurityProperties.DEFAULT_FILTER_ORDER - 10;
+    }
+
+    private static class Release implements AsyncListener {
+        private final Bulkhead bulkhead;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Release(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                bulkhead.release();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.bulkhead;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrency limit following the gradient algorithm: once per window the limit is scaled by the ratio between the
+ * best latency seen and the current average latency, plus a square-root allowance for queueing. The limit only grows
+ * while the service actually uses at least half of it, and the best latency is forgotten periodically so that a
+ * permanent latency shift is eventually accepted as the new baseline. Without any sample for the idle period, nothing
+ * indicates overload and the limit drifts back toward the maximum.
+ */
+public class GradientLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final long windowNanos;
+    private final int minRttResetWindows;
+    private final long idleNanos;
+    private final LongSupplier nanoClock;
+
+    private final LongAdder windowRttSum = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+    private final AtomicLong windowStart;
+    private final AtomicBoolean updating = new AtomicBoolean();
+
+    private volatile double limit;
+    private volatile long minRttNanos = Long.MAX_VALUE;
+    private volatile long lastRttNanos;
+    private int windowsSinceMinRttReset;
+    private long lastSampledWindowStart;
+
+    public GradientLimit(
+            int initialLimit, int minLimit, int maxLimit, double smoothing,
+            long windowMillis, int minRttResetWindows, long idleMillis
+    ) {
+        this(initialLimit, minLimit, maxLimit, smoothing, windowMillis, minRttResetWindows, idleMillis, System::nanoTime);
+    }
+
+    GradientLimit(
+            int initialLimit, int minLimit, int maxLimit, double smoothing,
+            long windowMillis, int minRttResetWindows, long idleMillis, LongSupplier nanoClock
+    ) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.minRttResetWindows = minRttResetWindows;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        this.nanoClock = nanoClock;
+        this.windowStart = new AtomicLong(nanoClock.getAsLong());
+        this.lastSampledWindowStart = windowStart.get();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public long getMinRttNanos() {
+        return minRttNanos == Long.MAX_VALUE ? 0L : minRttNanos;
+    }
+
+    public long getLastRttNanos() {
+        return lastRttNanos;
+    }
+
+    public void onSample(long rttNanos, int inFlight) {
+        windowRttSum.add(rttNanos);
+        windowSamples.increment();
+        windowMaxInFlight.accumulateAndGet(inFlight, Math::max);
+        tick();
+    }
+
+    /**
+     * Closes the current window if it is over, for requests that are not sampled, so that the limit can recover when
+     * no samples arrive.
+     */
+    public void tick() {
+        final long now = nanoClock.getAsLong();
+        if (now - windowStart.get() >= windowNanos && updating.compareAndSet(false, true)) {
+            try {
+                update(windowStart.getAndSet(now));
+            } finally {
+                updating.set(false);
+            }
+        }
+    }
+
+    private void update(long start) {
+        final long samples = windowSamples.sumThenReset();
+        final long rttSum = windowRttSum.sumThenReset();
+        final int maxInFlight = windowMaxInFlight.getAndSet(0);
+        if (samples == 0) {
+            if (start - lastSampledWindowStart >= idleNanos) {
+                limit = Math.min(maxLimit, limit * (1 - smoothing) + maxLimit * smoothing);
+            }
+            return;
+        }
+        lastSampledWindowStart = start;
+        final long rtt = Math.max(1L, rttSum / samples);
+        lastRttNanos = rtt;
+        if (++windowsSinceMinRttReset >= minRttResetWindows) {
+            windowsSinceMinRttReset = 0;
+            minRttNanos = rtt;
+        } else if (rtt < minRttNanos) {
+            minRttNanos = rtt;
+        }
+        final double current = limit;
+        final double gradient = Math.max(0.5, Math.min(1.0, (double) minRttNanos / rtt));
+        if (gradient >= 1.0 && maxInFlight < current / 2) {
+            return;
+        }
+        final double target = current * gradient + Math.sqrt(current);
+        final double smoothed = current * (1 - smoothing) + target * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, smoothed));
+    }
+
+}
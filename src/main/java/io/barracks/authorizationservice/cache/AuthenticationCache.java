@@ -0,0 +1,195 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.cache;
+
+import io.barracks.authorizationservice.model.CacheInvalidation;
+import io.barracks.authorizationservice.model.CacheInvalidationType;
+import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.User;
+import io.barracks.authorizationservice.repository.TokenRepository;
+import io.barracks.authorizationservice.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Caches what authenticating a device, a session or an API token reads. Invalidations are applied locally and published
+ * on the {@link CacheInvalidationBus}; when they cannot be published or received, other instances keep serving a
+ * revoked token or an updated user until their entry is no longer fresh, or for up to {@code fresh_ms +
+ * stale_if_error_ms} while Mongo is failing.
+ */
+@Component
+public class AuthenticationCache implements PublicMetrics {
+
+    private final CacheInvalidationBus invalidationBus;
+    private final ThreadPoolExecutor refreshExecutor;
+    private final StaleWhileRevalidateCache<String, User> usersByApiKey;
+    private final StaleWhileRevalidateCache<String, User> usersByEmail;
+    private final StaleWhileRevalidateCache<String, Token> tokensByValue;
+
+    @Autowired
+    public AuthenticationCache(
+            UserRepository userRepository,
+            TokenRepository tokenRepository,
+            CacheInvalidationBus invalidationBus,
+            @Value("${io.barracks.authorizationservice.auth_cache.fresh_ms:5000}") long freshMillis,
+            @Value("${io.barracks.authorizationservice.auth_cache.stale_while_revalidate_ms:30000}") long staleWhileRevalidateMillis,
+            @Value("${io.barracks.authorizationservice.auth_cache.stale_if_error_ms:300000}") long staleIfErrorMillis,
+            @Value("${io.barracks.authorizationservice.auth_cache.max_entries:10000}") int maxEntries,
+            @Value("${io.barracks.authorizationservice.auth_cache.refresh_threads:2}") int refreshThreads
+    ) {
+        this.invalidationBus = invalidationBus;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.refreshExecutor = new ThreadPoolExecutor(
+                refreshThreads, refreshThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxEntries),
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "auth-cache-refresh-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        this.usersByApiKey = new StaleWhileRevalidateCache<>(
+                "users_by_api_key", userRepository::findByApiKey, refreshExecutor,
+                freshMillis, staleWhileRevalidateMillis, staleIfErrorMillis, maxEntries
+        );
+        this.usersByEmail = new StaleWhileRevalidateCache<>(
+                "users_by_email", userRepository::findByEmail, refreshExecutor,
+                freshMillis, staleWhileRevalidateMillis, staleIfErrorMillis, maxEntries
+        );
+        this.tokensByValue = new StaleWhileRevalidateCache<>(
+                "tokens_by_value", tokenRepository::findByValue, refreshExecutor,
+                freshMillis, staleWhileRevalidateMillis, staleIfErrorMillis, maxEntries
+        );
+        invalidationBus.subscribe(this::apply);
+    }
+
+    public Optional<User> getUserByApiKey(String apiKey) {
+        return usersByApiKey.get(apiKey);
+    }
+
+    public CompletableFuture<Optional<User>> getUserByApiKeyAsync(String apiKey, Function<String, CompletableFuture<Optional<User>>> loader) {
+        return usersByApiKey.getAsync(apiKey, loader);
+    }
+
+    public Optional<User> getUserByEmail(String email) {
+        return usersByEmail.get(email);
+    }
+
+    public Optional<Token> getTokenByValue(String value) {
+        return tokensByValue.get(value);
+    }
+
+    public HotKeySnapshot snapshot() {
+        final Set<String> userIds = new LinkedHashSet<>();
+        usersByApiKey.values().forEach(user -> userIds.add(user.getId()));
+        usersByEmail.values().forEach(user -> userIds.add(user.getId()));
+        final List<String> tokenIds = tokensByValue.values().stream().map(Token::getId).collect(Collectors.toList());
+        return new HotKeySnapshot(System.currentTimeMillis(), new ArrayList<>(userIds), tokenIds);
+    }
+
+    public void preloadUser(User user) {
+        usersByEmail.put(user.getEmail(), user);
+        usersByApiKey.put(user.getApiKey(), user);
+    }
+
+    public void preloadToken(Token token) {
+        tokensByValue.put(token.getValue(), token);
+    }
+
+    public void invalidateUser(String email) {
+        invalidateUserLocally(email);
+        invalidationBus.publish(CacheInvalidationType.USER, email);
+    }
+
+    public void invalidateToken(Token token) {
+        tokensByValue.invalidate(token.getValue());
+        // Token values are credentials, other instances are told the id
+        invalidationBus.publish(CacheInvalidationType.TOKEN, token.getId());
+    }
+
+    public void invalidateTokensOfUser(String userId) {
+        invalidateTokensOfUserLocally(userId);
+        invalidationBus.publish(CacheInvalidationType.TOKENS_OF_USER, userId);
+    }
+
+    void apply(CacheInvalidation invalidation) {
+        final String key = invalidation.getKey();
+        switch (invalidation.getType()) {
+            case USER:
+                invalidateUserLocally(key);
+                break;
+            case TOKEN:
+                tokensByValue.invalidateIf(token -> key.equals(token.getId()));
+                break;
+            case TOKENS_OF_USER:
+                invalidateTokensOfUserLocally(key);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void invalidateUserLocally(String email) {
+        usersByEmail.invalidate(email);
+        usersByApiKey.invalidateIf(user -> email.equals(user.getEmail()));
+    }
+
+    private void invalidateTokensOfUserLocally(String userId) {
+        tokensByValue.invalidateIf(token -> userId.equals(token.getUserId()));
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final Collection<Metric<?>> metrics = new ArrayList<>();
+        metrics.addAll(usersByApiKey.metrics());
+        metrics.addAll(usersByEmail.metrics());
+        metrics.addAll(tokensByValue.metrics());
+        metrics.add(new Metric<>("auth_cache.pending_refreshes", refreshExecutor.getQueue().size()));
+        return metrics;
+    }
+
+    @PreDestroy
+    public void stop() {
+        refreshExecutor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.cache;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.Bytes;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import io.barracks.authorizationservice.model.CacheInvalidation;
+import io.barracks.authorizationservice.model.CacheInvalidationType;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Propagates authentication cache invalidations to the other instances. Invalidations are appended to a capped
+ * collection that every instance tails, so a revoked token or an updated user is dropped everywhere within the tailing
+ * latency instead of when the cached entry expires.
+ */
+@Component
+public class CacheInvalidationBus {
+
+    private static final int CAPPED_SIZE_BYTES = 1024 * 1024;
+    private static final int CAPPED_MAX_DOCUMENTS = 10000;
+    // ObjectIds of different instances are only ordered by second, resuming a second early replays instead of skipping
+    private static final long RESUME_OVERLAP_MILLIS = 1000L;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final MongoOperations mongoOperations;
+    private final boolean enabled;
+    private final long retryIntervalMillis;
+    private final String origin = UUID.randomUUID().toString();
+    private final List<Consumer<CacheInvalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean collectionReady;
+    private volatile boolean running;
+    private volatile DBCursor cursor;
+    private Thread worker;
+
+    @Autowired
+    public CacheInvalidationBus(
+            MongoOperations mongoOperations,
+            @Value("${io.barracks.authorizationservice.cache_invalidation.enabled:true}") boolean enabled,
+            @Value("${io.barracks.authorizationservice.cache_invalidation.retry_interval_ms:1000}") long retryIntervalMillis
+    ) {
+        this.mongoOperations = mongoOperations;
+        this.enabled = enabled;
+        this.retryIntervalMillis = retryIntervalMillis;
+    }
+
+    public void subscribe(Consumer<CacheInvalidation> listener) {
+        listeners.add(listener);
+    }
+
+    public void publish(CacheInvalidationType type, String key) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            ensureCollection();
+            mongoOperations.insert(CacheInvalidation.builder()
+                    .type(type)
+                    .key(key)
+                    .origin(origin)
+                    .date(new Date())
+                    .build());
+        } catch (DataAccessException e) {
+            logger.error("{} invalidation could not be published, other instances keep it until their entry expires", type, e);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "cache-invalidation-listener");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (worker == null) {
+            return;
+        }
+        running = false;
+        final DBCursor current = cursor;
+        if (current != null) {
+            current.close();
+        }
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    void dispatch(CacheInvalidation invalidation) {
+        if (origin.equals(invalidation.getOrigin())) {
+            return;
+        }
+        for (Consumer<CacheInvalidation> listener : listeners) {
+            try {
+                listener.accept(invalidation);
+            } catch (RuntimeException e) {
+                logger.error("Invalidation {} could not be applied", invalidation, e);
+            }
+        }
+    }
+
+    private void run() {
+        Date resumeFrom = new Date();
+        while (running) {
+            try {
+                resumeFrom = tail(resumeFrom);
+            } catch (RuntimeException e) {
+                if (running) {
+                    logger.warn("Tailing cache invalidations failed: {}", e.getMessage());
+                }
+            }
+            try {
+                Thread.sleep(retryIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Date tail(Date resumeFrom) {
+        final DBCollection collection = ensureCollection();
+        final ObjectId lowerBound = new ObjectId(new Date(resumeFrom.getTime() - RESUME_OVERLAP_MILLIS));
+        final DBCursor tailable = collection.find(new BasicDBObject("_id", new BasicDBObject("$gte", lowerBound)))
+                .addOption(Bytes.QUERYOPTION_TAILABLE)
+                .addOption(Bytes.QUERYOPTION_AWAITDATA);
+        cursor = tailable;
+        Date lastSeen = resumeFrom;
+        try {
+            // The cursor dies when the collection is empty, the caller tails again after the retry interval
+            while (running && tailable.hasNext()) {
+                final DBObject object = tailable.next();
+                dispatch(mongoOperations.getConverter().read(CacheInvalidation.class, object));
+                lastSeen = ((ObjectId) object.get("_id")).getDate();
+            }
+            return lastSeen;
+        } finally {
+            tailable.close();
+        }
+    }
+
+    private DBCollection ensureCollection() {
+        final String name = mongoOperations.getCollectionName(CacheInvalidation.class);
+        if (!collectionReady && !mongoOperations.collectionExists(name)) {
+            // An insert would create a regular collection, which cannot be tailed
+            try {
+                mongoOperations.createCollection(name, new CollectionOptions(CAPPED_SIZE_BYTES, CAPPED_MAX_DOCUMENTS, true));
+            } catch (DataAccessException e) {
+                logger.debug("Collection {} was created concurrently: {}", name, e.getMessage());
+            }
+        }
+        collectionReady = true;
+        return mongoOperations.getCollection(name);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.cache;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Ids of the users and tokens an instance was serving, stored as a memory-mapped file: a magic number, the creation
+ * date, then each list as a count followed by length-prefixed UTF-8 ids. Only ids are stored, never api keys or token
+ * values.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class HotKeySnapshot {
+
+    private static final int MAGIC = 0x484b5331;
+
+    private final long creationDate;
+    private final List<String> userIds;
+    private final List<String> tokenIds;
+
+    public HotKeySnapshot(long creationDate, List<String> userIds, List<String> tokenIds) {
+        this.creationDate = creationDate;
+        this.userIds = userIds;
+        this.tokenIds = tokenIds;
+    }
+
+    public void writeTo(Path path) throws IOException {
+        final List<byte[]> encodedUserIds = encode(userIds);
+        final List<byte[]> encodedTokenIds = encode(tokenIds);
+        final long size = Integer.BYTES + Long.BYTES + sizeOf(encodedUserIds) + sizeOf(encodedTokenIds);
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC);
+            buffer.putLong(creationDate);
+            put(buffer, encodedUserIds);
+            put(buffer, encodedTokenIds);
+            buffer.force();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static HotKeySnapshot readFrom(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < Integer.BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a hot key snapshot");
+            }
+            final long creationDate = buffer.getLong();
+            return new HotKeySnapshot(creationDate, get(path, buffer), get(path, buffer));
+        } catch (BufferUnderflowException e) {
+            throw new IOException(path + " is truncated", e);
+        }
+    }
+
+    private static List<byte[]> encode(Collection<String> ids) {
+        final List<byte[]> encoded = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            final byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length <= Short.MAX_VALUE) {
+                encoded.add(bytes);
+            }
+        }
+        return encoded;
+    }
+
+    private static long sizeOf(List<byte[]> encoded) {
+        long size = Integer.BYTES;
+        for (byte[] bytes : encoded) {
+            size += Short.BYTES + bytes.length;
+        }
+        return size;
+    }
+
+    private static void put(MappedByteBuffer buffer, List<byte[]> encoded) {
+        buffer.putInt(encoded.size());
+        for (byte[] bytes : encoded) {
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static List<String> get(Path path, MappedByteBuffer buffer) throws IOException {
+        final int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / Short.BYTES) {
+            throw new IOException(path + " has an invalid id count " + count);
+        }
+        final List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int length = buffer.getShort() & 0xFFFF;
+            if (length > buffer.remaining()) {
+                throw new IOException(path + " has an invalid id length " + length);
+            }
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            ids.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return ids;
+    }
+
+}
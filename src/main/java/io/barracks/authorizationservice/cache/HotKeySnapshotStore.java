@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.cache;
+
+import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.User;
+import io.barracks.authorizationservice.repository.TokenRepository;
+import io.barracks.authorizationservice.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the hot keys of the authentication cache across restarts. The snapshot lives in the service's data directory,
+ * which must survive the instance for the snapshot to be of any use; a snapshot that cannot be read is deleted.
+ */
+@Component
+public class HotKeySnapshotStore {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final AuthenticationCache authenticationCache;
+    private final UserRepository userRepository;
+    private final TokenRepository tokenRepository;
+    private final Path path;
+    private final long maxAgeMillis;
+
+    @Autowired
+    public HotKeySnapshotStore(
+            AuthenticationCache authenticationCache,
+            UserRepository userRepository,
+            TokenRepository tokenRepository,
+            @Value("${io.barracks.authorizationservice.auth_cache.snapshot_file:}") String file,
+            @Value("${io.barracks.authorizationservice.auth_cache.snapshot_max_age_ms:86400000}") long maxAgeMillis
+    ) {
+        this.authenticationCache = authenticationCache;
+        this.userRepository = userRepository;
+        this.tokenRepository = tokenRepository;
+        this.path = file.isEmpty() ? null : Paths.get(file);
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    @PreDestroy
+    public void save() {
+        if (path == null) {
+            return;
+        }
+        final HotKeySnapshot snapshot = authenticationCache.snapshot();
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            snapshot.writeTo(path);
+            logger.info("Saved {} user ids and {} token ids to {}", snapshot.getUserIds().size(), snapshot.getTokenIds().size(), path);
+        } catch (IOException e) {
+            logger.warn("Hot keys cannot be saved to {}", path, e);
+        }
+    }
+
+    public String restore() throws IOException {
+        if (path == null) {
+            return "disabled";
+        }
+        if (!Files.exists(path)) {
+            return "no snapshot";
+        }
+        final HotKeySnapshot snapshot;
+        try {
+            snapshot = HotKeySnapshot.readFrom(path);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        if (System.currentTimeMillis() - snapshot.getCreationDate() > maxAgeMillis) {
+            return "snapshot too old";
+        }
+        int users = 0;
+        for (List<String> batch : batches(snapshot.getUserIds())) {
+            for (User user : userRepository.findAll(batch)) {
+                authenticationCache.preloadUser(user);
+                users++;
+            }
+        }
+        int tokens = 0;
+        for (List<String> batch : batches(snapshot.getTokenIds())) {
+            for (Token token : tokenRepository.findAll(batch)) {
+                if (!token.isRevoked()) {
+                    authenticationCache.preloadToken(token);
+                    tokens++;
+                }
+            }
+        }
+        return users + " users, " + tokens + " tokens";
+    }
+
+    private static List<List<String>> batches(List<String> ids) {
+        final List<List<String>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            batches.add(ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE)));
+        }
+        return batches;
+    }
+
+}
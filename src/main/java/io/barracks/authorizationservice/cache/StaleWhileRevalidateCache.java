@@ -0,0 +1,336 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.dao.DataAccessException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache that follows the HTTP {@code stale-while-revalidate} and {@code stale-if-error} semantics: an entry
+ * is served as-is while fresh, served and refreshed in the background while within the revalidation window, and only
+ * served from a failed load while within the error window. Absent values are never cached.
+ * <p>
+ * Invalidating a key leaves a tombstone in its place so that loads started before the invalidation cannot store what
+ * they read; loads of other keys are not affected. When full, the least recently accessed tenth of the entries is
+ * evicted.
+ */
+public class StaleWhileRevalidateCache<K, V> {
+
+    private static final int EVICTION_BATCH_DIVISOR = 10;
+    private static final long ACCESS_RESOLUTION_MILLIS = 1000L;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final String name;
+    private final Function<K, Optional<V>> loader;
+    private final Executor refreshExecutor;
+    private final LongSupplier clock;
+    private final long freshMillis;
+    private final long staleWhileRevalidateMillis;
+    private final long staleIfErrorMillis;
+    private final int maxEntries;
+
+    private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Object evictionLock = new Object();
+    private final AtomicLong predicateInvalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final LongAdder staleOnError = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public StaleWhileRevalidateCache(
+            String name, Function<K, Optional<V>> loader, Executor refreshExecutor,
+            long freshMillis, long staleWhileRevalidateMillis, long staleIfErrorMillis, int maxEntries
+    ) {
+        this(name, loader, refreshExecutor, System::currentTimeMillis, freshMillis, staleWhileRevalidateMillis, staleIfErrorMillis, maxEntries);
+    }
+
+    StaleWhileRevalidateCache(
+            String name, Function<K, Optional<V>> loader, Executor refreshExecutor, LongSupplier clock,
+            long freshMillis, long staleWhileRevalidateMillis, long staleIfErrorMillis, int maxEntries
+    ) {
+        this.name = name;
+        this.loader = loader;
+        this.refreshExecutor = refreshExecutor;
+        this.clock = clock;
+        this.freshMillis = freshMillis;
+        this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+        this.staleIfErrorMillis = staleIfErrorMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    public Optional<V> get(K key) {
+        final long now = clock.getAsLong();
+        final Entry<V> entry = entries.get(key);
+        final Optional<V> cached = cached(key, entry, now);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        misses.increment();
+        final long generation = predicateInvalidations.get();
+        final Optional<V> loaded;
+        try {
+            loaded = loader.apply(key);
+        } catch (DataAccessException e) {
+            if (servableOnError(entry, now)) {
+                staleOnError.increment();
+                return Optional.of(entry.value);
+            }
+            loadFailures.increment();
+            throw e;
+        }
+        store(key, entry, loaded, generation);
+        return loaded;
+    }
+
+    /**
+     * Same as {@link #get(Object)}, but a miss is loaded with the given non-blocking loader instead of blocking the
+     * caller. Background refreshes still use the cache's own loader.
+     */
+    public CompletableFuture<Optional<V>> getAsync(K key, Function<K, CompletableFuture<Optional<V>>> asyncLoader) {
+        final long now = clock.getAsLong();
+        final Entry<V> entry = entries.get(key);
+        final Optional<V> cached = cached(key, entry, now);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        misses.increment();
+        final long generation = predicateInvalidations.get();
+        final CompletableFuture<Optional<V>> result = new CompletableFuture<>();
+        asyncLoader.apply(key).whenComplete((loaded, throwable) -> {
+            if (throwable == null) {
+                store(key, entry, loaded, generation);
+                result.complete(loaded);
+                return;
+            }
+            final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            if (cause instanceof DataAccessException && servableOnError(entry, now)) {
+                staleOnError.increment();
+                result.complete(Optional.of(entry.value));
+                return;
+            }
+            loadFailures.increment();
+            result.completeExceptionally(cause);
+        });
+        return result;
+    }
+
+    public void put(K key, V value) {
+        store(key, entries.get(key), Optional.of(value), predicateInvalidations.get());
+    }
+
+    public void invalidate(K key) {
+        entries.put(key, Entry.tombstone(clock.getAsLong()));
+    }
+
+    public void invalidateIf(Predicate<? super V> predicate) {
+        // Loads of keys that are not cached yet cannot be matched, every load in flight is discarded instead
+        predicateInvalidations.incrementAndGet();
+        entries.values().removeIf(entry -> !entry.isTombstone() && predicate.test(entry.value));
+    }
+
+    public List<V> values() {
+        return entries.values().stream()
+                .filter(entry -> !entry.isTombstone())
+                .map(entry -> entry.value)
+                .collect(Collectors.toList());
+    }
+
+    public int size() {
+        return (int) entries.values().stream().filter(entry -> !entry.isTombstone()).count();
+    }
+
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                metric("size", size()),
+                metric("hits", hits.sum()),
+                metric("stale_hits", staleHits.sum()),
+                metric("misses", misses.sum()),
+                metric("refreshes", refreshes.sum()),
+                metric("refresh_failures", refreshFailures.sum()),
+                metric("stale_on_error", staleOnError.sum()),
+                metric("load_failures", loadFailures.sum()),
+                metric("evictions", evictions.sum())
+        );
+    }
+
+    private Metric<Long> metric(String suffix, long value) {
+        return new Metric<>("auth_cache." + name + "." + suffix, value);
+    }
+
+    private Optional<V> cached(K key, Entry<V> entry, long now) {
+        if (entry == null || entry.isTombstone()) {
+            return Optional.empty();
+        }
+        final long age = now - entry.loadedAt;
+        if (age < freshMillis) {
+            hits.increment();
+            entry.access(now);
+            return Optional.of(entry.value);
+        }
+        if (age < freshMillis + staleWhileRevalidateMillis) {
+            staleHits.increment();
+            entry.access(now);
+            refresh(key, entry);
+            return Optional.of(entry.value);
+        }
+        return Optional.empty();
+    }
+
+    private boolean servableOnError(Entry<V> entry, long now) {
+        return entry != null && !entry.isTombstone() && now - entry.loadedAt < freshMillis + staleIfErrorMillis;
+    }
+
+    private void refresh(K key, Entry<V> entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        final long generation = predicateInvalidations.get();
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    store(key, entry, loader.apply(key), generation);
+                    refreshes.increment();
+                } catch (DataAccessException e) {
+                    refreshFailures.increment();
+                } catch (RuntimeException e) {
+                    refreshFailures.increment();
+                    logger.error("Refresh of a '{}' cache entry failed", name, e);
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshFailures.increment();
+            entry.refreshing.set(false);
+        }
+    }
+
+    private void store(K key, Entry<V> previous, Optional<V> loaded, long generation) {
+        if (!loaded.isPresent()) {
+            if (previous != null && !previous.isTombstone()) {
+                entries.remove(key, previous);
+            }
+            return;
+        }
+        if (predicateInvalidations.get() != generation) {
+            // An invalidation raced with the load, the value read may predate it
+            return;
+        }
+        final long now = clock.getAsLong();
+        final Entry<V> loadedEntry = new Entry<>(loaded.get(), now);
+        // Both fail when the key was invalidated or stored again since it was read, the newer state wins
+        if (previous != null) {
+            entries.replace(key, previous, loadedEntry);
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            evictLeastRecentlyAccessed();
+        }
+        entries.putIfAbsent(key, loadedEntry);
+    }
+
+    private void evictLeastRecentlyAccessed() {
+        synchronized (evictionLock) {
+            if (entries.size() < maxEntries) {
+                return;
+            }
+            entries.entrySet().stream()
+                    .map(EvictionCandidate::new)
+                    .sorted(Comparator.comparingLong(candidate -> candidate.accessedAt))
+                    .limit(Math.max(1, maxEntries / EVICTION_BATCH_DIVISOR))
+                    .forEach(candidate -> {
+                        if (entries.remove(candidate.key, candidate.entry)) {
+                            evictions.increment();
+                        }
+                    });
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long accessedAt;
+
+        private Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.accessedAt = loadedAt;
+        }
+
+        private static <V> Entry<V> tombstone(long invalidatedAt) {
+            return new Entry<>(null, invalidatedAt);
+        }
+
+        private boolean isTombstone() {
+            return value == null;
+        }
+
+        private void access(long now) {
+            // Hot keys are read by every worker, a coarse resolution keeps them from contending on the write
+            if (now - accessedAt >= ACCESS_RESOLUTION_MILLIS) {
+                accessedAt = now;
+            }
+        }
+    }
+
+    private static final class EvictionCandidate<K, V> {
+        private final K key;
+        private final Entry<V> entry;
+        private final long accessedAt;
+
+        private EvictionCandidate(Map.Entry<K, Entry<V>> mapEntry) {
+            this.key = mapEntry.getKey();
+            this.entry = mapEntry.getValue();
+            this.accessedAt = entry.accessedAt;
+        }
+    }
+
+}
@@ -39,6 +39,7 @@ public class ExceptionConfig extends ExceptionHandlingConfiguration {
                 .addErrorMessageHandler(PasswordResetTokenNotFoundException.class, HttpStatus.NOT_FOUND)
                 .addErrorMessageHandler(UnknownTokenException.class, HttpStatus.NOT_FOUND)
                 .addErrorMessageHandler(UnknownUserStatusException.class, HttpStatus.BAD_REQUEST)
+                .addErrorMessageHandler(InvalidCursorException.class, HttpStatus.BAD_REQUEST)
                 .addErrorMessageHandler(BarracksAuthenticationException.class, HttpStatus.UNAUTHORIZED)
                 .addErrorMessageHandler(UserAlreadyExistsException.class, HttpStatus.BAD_REQUEST)
                 .addErrorMessageHandler(PasswordResetTokenExpiredException.class, HttpStatus.GONE)
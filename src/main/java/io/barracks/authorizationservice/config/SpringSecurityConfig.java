@@ -24,6 +24,9 @@
 
 package io.barracks.authorizationservice.config;
 
+import io.barracks.authorizationservice.audit.AuditLog;
+import io.barracks.authorizationservice.metrics.AuthenticationMetrics;
+import io.barracks.authorizationservice.security.ServerTimingPasswordEncoder;
 import io.barracks.authorizationservice.security.jwt.StatelessAuthenticationFilter;
 import io.barracks.authorizationservice.security.jwt.StatelessLoginFilter;
 import io.barracks.authorizationservice.security.jwt.TokenAuthenticationService;
@@ -50,6 +53,12 @@ public class SpringSecurityConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private AuditLog auditLog;
+
+    @Autowired
+    private AuthenticationMetrics authenticationMetrics;
+
     public SpringSecurityConfig() {
         super(true);
     }
@@ -62,6 +71,7 @@ public class SpringSecurityConfig extends WebSecurityConfigurerAdapter {
                 .servletApi().and()
                 .authorizeRequests()
                 .antMatchers("/docs/**").permitAll()
+                .antMatchers("/readiness").permitAll()
                 .antMatchers("/login").permitAll()
                 .antMatchers("/device/**").permitAll()
                 .antMatchers("/password/**").permitAll()
@@ -73,12 +83,14 @@ public class SpringSecurityConfig extends WebSecurityConfigurerAdapter {
                                 "/login",
                                 tokenAuthenticationService,
                                 userDetailsService(),
-                                authenticationManager()
+                                authenticationManager(),
+                                auditLog,
+                                authenticationMetrics
                         ),
                         UsernamePasswordAuthenticationFilter.class
                 )
                 .addFilterBefore(
-                        new StatelessAuthenticationFilter(tokenAuthenticationService),
+                        new StatelessAuthenticationFilter(tokenAuthenticationService, auditLog),
                         UsernamePasswordAuthenticationFilter.class
                 );
     }
@@ -96,7 +108,7 @@ public class SpringSecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new ServerTimingPasswordEncoder(new BCryptPasswordEncoder());
     }
 
 }
@@ -24,7 +24,11 @@
 
 package io.barracks.authorizationservice.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.barracks.authorizationservice.metrics.ServerTimingJacksonConverter;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.PathMatchConfigurer;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 
@@ -36,4 +40,9 @@ public class WebMvcConfig extends WebMvcConfigurerAdapter {
         configurer.setUseSuffixPatternMatch(false);
     }
 
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        return new ServerTimingJacksonConverter(objectMapper);
+    }
+
 }
@@ -38,4 +38,9 @@ public class BarracksAuthenticationException extends AuthenticationException {
         super(MSG);
     }
 
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
 }
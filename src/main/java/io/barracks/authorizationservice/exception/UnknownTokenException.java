@@ -32,4 +32,9 @@ public class UnknownTokenException extends NestedRuntimeException {
         super("Unknown token " + token);
     }
 
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
 }
@@ -36,4 +36,9 @@ public class UserNotFoundException extends RuntimeException {
         super(MESSAGE);
     }
 
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
 }
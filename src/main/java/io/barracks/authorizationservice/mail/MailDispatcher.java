@@ -0,0 +1,235 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.mail;
+
+import io.barracks.authorizationservice.mail.util.MimeMessageBuilder;
+import io.barracks.authorizationservice.model.OutboxMail;
+import io.barracks.authorizationservice.repository.OutboxMailRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class MailDispatcher {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final OutboxMailRepository outboxMailRepository;
+    private final JavaMailSenderImpl javaMailSender;
+    private final BlockingQueue<String> queue;
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final long leaseMillis;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    private volatile boolean running;
+    private Thread worker;
+    // Only used by the worker, kept open across batches
+    private Transport transport;
+
+    @Autowired
+    public MailDispatcher(
+            OutboxMailRepository outboxMailRepository,
+            JavaMailSenderImpl javaMailSender,
+            @Value("${io.barracks.authorizationservice.mail.outbox.queue_capacity:1000}") int queueCapacity,
+            @Value("${io.barracks.authorizationservice.mail.outbox.batch_size:20}") int batchSize,
+            @Value("${io.barracks.authorizationservice.mail.outbox.poll_interval_ms:1000}") long pollIntervalMillis,
+            @Value("${io.barracks.authorizationservice.mail.outbox.lease_ms:60000}") long leaseMillis,
+            @Value("${io.barracks.authorizationservice.mail.outbox.max_attempts:8}") int maxAttempts,
+            @Value("${io.barracks.authorizationservice.mail.outbox.backoff_ms:5000}") long backoffMillis
+    ) {
+        this.outboxMailRepository = outboxMailRepository;
+        this.javaMailSender = javaMailSender;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.leaseMillis = leaseMillis;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    public boolean offer(String mailId) {
+        return queue.offer(mailId);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "mail-dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+        closeTransport();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                dispatch();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Mail dispatch failed", e);
+            }
+        }
+    }
+
+    void dispatch() throws InterruptedException {
+        final String queued = queue.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+        final Date now = new Date();
+        final Date leaseEnd = new Date(now.getTime() + leaseMillis);
+        final List<String> mailIds = new ArrayList<>(batchSize);
+        if (queued != null) {
+            mailIds.add(queued);
+            queue.drainTo(mailIds, batchSize - 1);
+        }
+        final List<OutboxMail> batch = outboxMailRepository.claimMails(mailIds, now, leaseEnd, batchSize);
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private void send(List<OutboxMail> batch) {
+        final Map<MimeMessage, OutboxMail> messages = new IdentityHashMap<>(batch.size());
+        for (OutboxMail mail : batch) {
+            try {
+                messages.put(toMimeMessage(mail), mail);
+            } catch (MessagingException e) {
+                logger.error("Mail {} cannot be built and is abandoned", mail, e);
+                outboxMailRepository.markMailAsFailed(mail.getId());
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+        final Map<MimeMessage, Exception> failures = sendMessages(messages.keySet());
+        for (Map.Entry<MimeMessage, OutboxMail> entry : messages.entrySet()) {
+            final Exception failure = failures.get(entry.getKey());
+            if (failure == null) {
+                outboxMailRepository.delete(entry.getValue().getId());
+            } else {
+                retry(entry.getValue(), failure);
+            }
+        }
+    }
+
+    private Map<MimeMessage, Exception> sendMessages(Collection<MimeMessage> messages) {
+        final Map<MimeMessage, Exception> failures = new IdentityHashMap<>(messages.size());
+        final Transport connected;
+        try {
+            connected = connectedTransport();
+        } catch (MessagingException e) {
+            messages.forEach(message -> failures.put(message, e));
+            return failures;
+        }
+        for (MimeMessage message : messages) {
+            try {
+                message.setSentDate(new Date());
+                message.saveChanges();
+                connected.sendMessage(message, message.getAllRecipients());
+            } catch (MessagingException e) {
+                failures.put(message, e);
+            }
+        }
+        return failures;
+    }
+
+    private Transport connectedTransport() throws MessagingException {
+        // Checking the connection also detects the ones the server dropped while idle
+        if (transport == null || !transport.isConnected()) {
+            closeTransport();
+            final Transport newTransport = javaMailSender.getProtocol() == null
+                    ? javaMailSender.getSession().getTransport()
+                    : javaMailSender.getSession().getTransport(javaMailSender.getProtocol());
+            newTransport.connect(
+                    javaMailSender.getHost(),
+                    javaMailSender.getPort(),
+                    emptyToNull(javaMailSender.getUsername()),
+                    emptyToNull(javaMailSender.getPassword())
+            );
+            transport = newTransport;
+        }
+        return transport;
+    }
+
+    private void closeTransport() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                logger.debug("SMTP connection could not be closed cleanly", e);
+            }
+            transport = null;
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private void retry(OutboxMail mail, Exception failure) {
+        if (mail.getAttempts() >= maxAttempts) {
+            logger.error("Mail {} abandoned after {} attempts", mail, mail.getAttempts(), failure);
+            outboxMailRepository.markMailAsFailed(mail.getId());
+        } else {
+            final long delay = backoffMillis << Math.min(mail.getAttempts() - 1, 10);
+            logger.warn("Mail {} failed on attempt {}, retrying in {} ms: {}", mail, mail.getAttempts(), delay, failure.getMessage());
+            outboxMailRepository.rescheduleMail(mail.getId(), new Date(System.currentTimeMillis() + delay));
+        }
+    }
+
+    private MimeMessage toMimeMessage(OutboxMail mail) throws MessagingException {
+        return new MimeMessageBuilder(javaMailSender.createMimeMessage())
+                .from(mail.getFrom())
+                .replyTo(mail.getReplyTo())
+                .to(mail.getRecipients().toArray(new String[mail.getRecipients().size()]))
+                .subject(mail.getSubject())
+                .text(mail.getText())
+                .html(mail.getHtml())
+                .build();
+    }
+
+}
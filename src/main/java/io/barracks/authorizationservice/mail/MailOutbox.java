@@ -0,0 +1,63 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.mail;
+
+import io.barracks.authorizationservice.model.OutboxMail;
+import io.barracks.authorizationservice.model.OutboxMailStatus;
+import io.barracks.authorizationservice.repository.OutboxMailRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+
+@Component
+public class MailOutbox {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final OutboxMailRepository outboxMailRepository;
+    private final MailDispatcher mailDispatcher;
+
+    @Autowired
+    public MailOutbox(OutboxMailRepository outboxMailRepository, MailDispatcher mailDispatcher) {
+        this.outboxMailRepository = outboxMailRepository;
+        this.mailDispatcher = mailDispatcher;
+    }
+
+    public OutboxMail enqueue(OutboxMail mail) {
+        final OutboxMail inserted = outboxMailRepository.insert(mail.toBuilder()
+                .status(OutboxMailStatus.PENDING)
+                .attempts(0)
+                .nextAttemptDate(new Date())
+                .build());
+        if (!mailDispatcher.offer(inserted.getId())) {
+            logger.warn("Mail dispatch queue is full, {} will be sent by the next outbox sweep", inserted);
+        }
+        return inserted;
+    }
+
+}
@@ -26,21 +26,21 @@ package io.barracks.authorizationservice.mail;
 
 import com.github.jknack.handlebars.Handlebars;
 import com.github.jknack.handlebars.Template;
-import io.barracks.authorizationservice.mail.util.MimeMessageBuilder;
 import io.barracks.authorizationservice.mail.util.UrlHelper;
+import io.barracks.authorizationservice.model.OutboxMail;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
 
-import javax.mail.MessagingException;
+import javax.annotation.PostConstruct;
 import java.io.IOException;
+import java.util.Arrays;
 
 public abstract class Mailer<T> {
 
     public static final String TEMPLATES_EMAILS_BASE_FOLDER = "/templates/emails/";
 
     @Autowired
-    private JavaMailSender javaMailSender;
+    private MailOutbox mailOutbox;
 
     @Value("${io.barracks.authorizationservice.reset_password.mail.from}")
     private String from;
@@ -51,57 +51,78 @@ public abstract class Mailer<T> {
     @Value("${io.barracks.authorizationservice.base_url}")
     private String baseUrl;
 
+    @Value("${io.barracks.authorizationservice.mail.lazy_templates:false}")
+    private boolean lazyTemplates;
+
     private Handlebars handlebars;
 
+    private volatile Template htmlTemplate;
+
+    private volatile Template textTemplate;
+
     public Mailer() {
         this.handlebars = new Handlebars();
         handlebars.registerHelper(UrlHelper.NAME, new UrlHelper());
     }
 
+    @PostConstruct
+    public void initialize() {
+        if (!lazyTemplates) {
+            compileTemplates();
+        }
+    }
+
+    public synchronized void compileTemplates() {
+        final String templateFolder = TEMPLATES_EMAILS_BASE_FOLDER + this.getClass().getSimpleName();
+        try {
+            this.htmlTemplate = handlebars.compile(templateFolder + "/html");
+            this.textTemplate = handlebars.compile(templateFolder + "/text");
+        } catch (IOException e) {
+            throw new EmailTemplateException(e);
+        }
+    }
+
     public void send(T object) {
         try {
             final HandleBarTemplateContext<T> context = new HandleBarTemplateContext<>(object, baseUrl);
-            final MimeMessageBuilder messageBuilder = getMessageBuilder()
+            mailOutbox.enqueue(OutboxMail.builder()
+                    .from(from)
+                    .replyTo(replyTo)
+                    .recipients(Arrays.asList(getRecipients(context)))
+                    .subject(getSubject(context))
                     .text(getTextContent(context))
                     .html(getHtmlContent(context))
-                    .subject(getSubject(context))
-                    .to(getRecipients(context));
-            this.send(messageBuilder);
+                    .build());
         } catch (IOException e) {
             throw new EmailTemplateException(e);
-        } catch (MessagingException e) {
-            throw new RuntimeException(e);
         }
     }
 
+    public void render(T object) throws IOException {
+        final HandleBarTemplateContext<T> context = new HandleBarTemplateContext<>(object, baseUrl);
+        getTextContent(context);
+        getHtmlContent(context);
+    }
+
     protected abstract String[] getRecipients(HandleBarTemplateContext<T> object);
 
     protected abstract String getSubject(HandleBarTemplateContext<T> object);
 
-    private MimeMessageBuilder getMessageBuilder() throws MessagingException {
-        return new MimeMessageBuilder(javaMailSender.createMimeMessage())
-                .from(from)
-                .replyTo(replyTo);
+    String getHtmlContent(HandleBarTemplateContext<T> object) throws IOException {
+        ensureCompiled();
+        return htmlTemplate.apply(object);
     }
 
-    private void send(MimeMessageBuilder messageBuilder) {
-        try {
-            javaMailSender.send(messageBuilder.build());
-        } catch (MessagingException e) {
-            throw new RuntimeException(e);
-        }
+    String getTextContent(HandleBarTemplateContext<T> object) throws IOException {
+        ensureCompiled();
+        return textTemplate.apply(object);
     }
 
-    private String getHtmlContent(HandleBarTemplateContext<T> object) throws IOException {
-        final String className = this.getClass().getSimpleName();
-        final Template template = handlebars.compile(TEMPLATES_EMAILS_BASE_FOLDER + className + "/html");
-        return template.apply(object);
-    }
-
-    private String getTextContent(HandleBarTemplateContext<T> object) throws IOException {
-        final String className = this.getClass().getSimpleName();
-        final Template template = handlebars.compile(TEMPLATES_EMAILS_BASE_FOLDER + className + "/text");
-        return template.apply(object);
+    private void ensureCompiled() {
+        // The text template is assigned last, once it is visible both templates are
+        if (textTemplate == null) {
+            compileTemplates();
+        }
     }
 
 }
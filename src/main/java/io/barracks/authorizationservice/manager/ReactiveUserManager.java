@@ -0,0 +1,68 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.manager;
+
+import io.barracks.authorizationservice.cache.AuthenticationCache;
+import io.barracks.authorizationservice.config.ReactiveMongoConfig;
+import io.barracks.authorizationservice.exception.BarracksAuthenticationException;
+import io.barracks.authorizationservice.metrics.AuthenticationMetrics;
+import io.barracks.authorizationservice.metrics.AuthenticationStage;
+import io.barracks.authorizationservice.model.User;
+import io.barracks.authorizationservice.repository.ReactiveUserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+
+@Service
+@ConditionalOnProperty(name = ReactiveMongoConfig.ENABLED_PROPERTY, havingValue = "true")
+public class ReactiveUserManager {
+
+    private final ReactiveUserRepository reactiveUserRepository;
+    private final AuthenticationCache authenticationCache;
+    private final AuthenticationMetrics authenticationMetrics;
+
+    @Autowired
+    public ReactiveUserManager(
+            ReactiveUserRepository reactiveUserRepository,
+            AuthenticationCache authenticationCache,
+            AuthenticationMetrics authenticationMetrics
+    ) {
+        this.reactiveUserRepository = reactiveUserRepository;
+        this.authenticationCache = authenticationCache;
+        this.authenticationMetrics = authenticationMetrics;
+    }
+
+    public CompletableFuture<User> getUserByApiKey(String apiKey) {
+        final long start = System.nanoTime();
+        return authenticationCache.getUserByApiKeyAsync(apiKey, reactiveUserRepository::findByApiKey)
+                .whenComplete((user, throwable) ->
+                        authenticationMetrics.record(AuthenticationStage.USER_FIND_BY_API_KEY, user != null && user.isPresent(), start)
+                )
+                .thenApply(user -> user.orElseThrow(BarracksAuthenticationException::new));
+    }
+
+}
@@ -24,30 +24,42 @@
 
 package io.barracks.authorizationservice.manager;
 
+import io.barracks.authorizationservice.cache.AuthenticationCache;
 import io.barracks.authorizationservice.exception.UnknownTokenException;
+import io.barracks.authorizationservice.model.CursorPage;
 import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.TokenCursor;
+import io.barracks.authorizationservice.model.TokenRevocation;
 import io.barracks.authorizationservice.model.User;
 import io.barracks.authorizationservice.repository.TokenRepository;
 import io.barracks.authorizationservice.security.jwt.TokenHandler;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class TokenManager {
 
     private final TokenHandler tokenHandler;
     private final TokenRepository tokenRepository;
+    private final AuthenticationCache authenticationCache;
 
     @Autowired
-    public TokenManager(TokenHandler tokenHandler, TokenRepository tokenRepository) {
+    public TokenManager(TokenHandler tokenHandler, TokenRepository tokenRepository, AuthenticationCache authenticationCache) {
         this.tokenHandler = tokenHandler;
         this.tokenRepository = tokenRepository;
+        this.authenticationCache = authenticationCache;
     }
 
     public Token createToken(User user, String label) {
@@ -64,9 +76,48 @@ public class TokenManager {
         return tokenRepository.getTokensByUserId(user.getId(), pageable);
     }
 
+    public CursorPage<Token> getTokensForUser(User user, String cursor, int limit, boolean withTotal) {
+        final List<Token> tokens = tokenRepository.getTokensByUserIdAfter(user.getId(), decodeCursor(cursor), limit + 1);
+        final boolean hasNext = tokens.size() > limit;
+        final List<Token> content = hasNext ? tokens.subList(0, limit) : tokens;
+        return CursorPage.<Token>builder()
+                .content(content)
+                .next(hasNext ? TokenCursor.after(content.get(limit - 1)).encode() : null)
+                .total(withTotal ? tokenRepository.countByUserId(user.getId()) : null)
+                .build();
+    }
+
+    public CloseableIterator<Token> streamTokenSummariesForUser(User user, String cursor, int limit) {
+        return tokenRepository.streamTokenSummariesByUserIdAfter(user.getId(), decodeCursor(cursor), limit + 1);
+    }
+
+    private TokenCursor decodeCursor(String cursor) {
+        return cursor == null || cursor.isEmpty() ? null : TokenCursor.decode(cursor);
+    }
+
     public Token revokeToken(String tokenValue) {
         final Token token = getTokenByValue(tokenValue);
-        return tokenRepository.revokeToken(token.getId());
+        final Token revoked = tokenRepository.revokeToken(token.getId());
+        authenticationCache.invalidateToken(token);
+        return revoked;
+    }
+
+    public TokenRevocation revokeTokensOfUser(User user, Collection<String> tokenIds) {
+        final Set<String> distinctIds = new HashSet<>(tokenIds);
+        final long revoked = tokenRepository.revokeTokensOfUser(user.getId(), distinctIds);
+        authenticationCache.invalidateTokensOfUser(user.getId());
+        return TokenRevocation.builder()
+                .requested(distinctIds.size())
+                .revoked(revoked)
+                .build();
+    }
+
+    public TokenRevocation revokeAllTokensOfUser(User user) {
+        final long revoked = tokenRepository.revokeAllTokensOfUser(user.getId());
+        authenticationCache.invalidateTokensOfUser(user.getId());
+        return TokenRevocation.builder()
+                .revoked(revoked)
+                .build();
     }
 
     public Token getTokenByValue(String tokenValue) {
@@ -74,6 +125,10 @@ public class TokenManager {
         return token.orElseThrow(() -> new UnknownTokenException(tokenValue));
     }
 
+    public Token getCachedTokenByValue(String tokenValue) {
+        return authenticationCache.getTokenByValue(tokenValue).orElseThrow(() -> new UnknownTokenException(tokenValue));
+    }
+
     public String getEmailFromToken(String token) {
         return tokenHandler.parseEmailFromToken(token);
     }
@@ -86,5 +141,13 @@ public class TokenManager {
         return tokenHandler.getTokenExpirationDate(token);
     }
 
+    public Claims parseToken(String token) {
+        return tokenHandler.parseClaims(token);
+    }
+
+    public boolean isWellFormedToken(String token) {
+        return tokenHandler.isWellFormed(token);
+    }
+
 }
 
@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.manager;
+
+import io.barracks.authorizationservice.model.TokenUsage;
+import io.barracks.authorizationservice.repository.TokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Component
+public class TokenUsageRecorder {
+
+    private static final int STRIPES = 16;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final TokenRepository tokenRepository;
+    private final long flushIntervalMillis;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private volatile boolean running;
+    private Thread worker;
+
+    @Autowired
+    public TokenUsageRecorder(
+            TokenRepository tokenRepository,
+            @Value("${io.barracks.authorizationservice.token_usage.flush_interval_ms:10000}") long flushIntervalMillis
+    ) {
+        this.tokenRepository = tokenRepository;
+        this.flushIntervalMillis = flushIntervalMillis;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public void record(String tokenId) {
+        record(tokenId, System.currentTimeMillis(), 1);
+    }
+
+    private void record(String tokenId, long lastUsed, long useCount) {
+        final Stripe stripe = stripes[(tokenId.hashCode() & Integer.MAX_VALUE) % STRIPES];
+        synchronized (stripe) {
+            final Usage usage = stripe.usages.computeIfAbsent(tokenId, id -> new Usage());
+            usage.lastUsed = Math.max(usage.lastUsed, lastUsed);
+            usage.useCount += useCount;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "token-usage-recorder");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+        flush();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMillis);
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // The worker is the only one flushing the stripes, it must outlive a batch that cannot be written
+                logger.error("Token usages could not be flushed", e);
+            }
+        }
+    }
+
+    void flush() {
+        final List<TokenUsage> usages = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            final Map<String, Usage> drained;
+            synchronized (stripe) {
+                if (stripe.usages.isEmpty()) {
+                    continue;
+                }
+                drained = stripe.usages;
+                stripe.usages = new HashMap<>();
+            }
+            drained.forEach((tokenId, usage) -> usages.add(TokenUsage.builder()
+                    .tokenId(tokenId)
+                    .lastUsed(new Date(usage.lastUsed))
+                    .useCount(usage.useCount)
+                    .build()));
+        }
+        if (usages.isEmpty()) {
+            return;
+        }
+        try {
+            tokenRepository.recordTokenUsages(usages);
+        } catch (BulkOperationException e) {
+            // The other writes of the unordered bulk have already added their counts, retrying them would count twice
+            final List<TokenUsage> failed = e.getErrors().stream()
+                    .map(error -> usages.get(error.getIndex()))
+                    .collect(Collectors.toList());
+            logger.warn("Usage of {} of {} tokens could not be flushed and will be retried: {}", failed.size(), usages.size(), e.getMessage());
+            requeue(failed);
+        } catch (DataAccessException e) {
+            logger.warn("Usage of {} tokens could not be flushed and will be retried: {}", usages.size(), e.getMessage());
+            requeue(usages);
+        }
+    }
+
+    private void requeue(List<TokenUsage> usages) {
+        usages.forEach(usage -> record(usage.getTokenId(), usage.getLastUsed().getTime(), usage.getUseCount()));
+    }
+
+    private static class Stripe {
+        private Map<String, Usage> usages = new HashMap<>();
+    }
+
+    private static class Usage {
+        private long lastUsed;
+        private long useCount;
+    }
+
+}
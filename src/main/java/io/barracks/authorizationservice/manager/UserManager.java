@@ -24,9 +24,12 @@
 
 package io.barracks.authorizationservice.manager;
 
+import io.barracks.authorizationservice.cache.AuthenticationCache;
 import io.barracks.authorizationservice.exception.*;
 import io.barracks.authorizationservice.mail.PasswordConfirmAccountMailer;
 import io.barracks.authorizationservice.mail.PasswordResetMailer;
+import io.barracks.authorizationservice.metrics.AuthenticationMetrics;
+import io.barracks.authorizationservice.metrics.AuthenticationStage;
 import io.barracks.authorizationservice.model.PasswordResetToken;
 import io.barracks.authorizationservice.model.User;
 import io.barracks.authorizationservice.model.UserStatus;
@@ -34,19 +37,25 @@ import io.barracks.authorizationservice.repository.PasswordResetTokenRepository;
 import io.barracks.authorizationservice.repository.UserRepository;
 import io.barracks.authorizationservice.security.ApiKeyGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.util.Date;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class UserManager {
 
+    private static final long PASSWORD_RESET_TOKEN_VALIDITY_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    @Value("${io.barracks.authorizationservice.reset_password.dedup_window_ms:300000}")
+    private long passwordResetDedupWindowMillis;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -65,6 +74,12 @@ public class UserManager {
     @Autowired
     private ApiKeyGenerator apiKeyGenerator;
 
+    @Autowired
+    private AuthenticationCache authenticationCache;
+
+    @Autowired
+    private AuthenticationMetrics authenticationMetrics;
+
     public User registerUser(User user) {
         try {
             User toSave = User.builder()
@@ -83,57 +98,83 @@ public class UserManager {
     }
 
     public User editUserStatus(String userId, UserStatus status) {
-        return userRepository.updateUserStatus(userId, status).orElseThrow(UserNotFoundException::new);
+        final User user = userRepository.updateUserStatus(userId, status).orElseThrow(UserNotFoundException::new);
+        authenticationCache.invalidateUser(user.getEmail());
+        return user;
     }
 
     public void initPassword(String userEmail) {
-        final PasswordResetToken insertedResetToken = createPasswordResetToken(userEmail);
-        passwordConfirmAccountMailer.send(insertedResetToken);
+        issuePasswordResetToken(userEmail).ifPresent(passwordConfirmAccountMailer::send);
     }
 
     public void resetPassword(String userEmail) {
-        final PasswordResetToken insertedResetToken = createPasswordResetToken(userEmail);
-        passwordResetMailer.send(insertedResetToken);
+        issuePasswordResetToken(userEmail).ifPresent(passwordResetMailer::send);
     }
 
-    private PasswordResetToken createPasswordResetToken(String userEmail) {
+    private Optional<PasswordResetToken> issuePasswordResetToken(String userEmail) {
         try {
             getUserByEmail(userEmail);
-            final PasswordResetToken token = PasswordResetToken.builder()
+            final Date now = new Date();
+            final PasswordResetToken candidate = PasswordResetToken.builder()
                     .token(UUID.randomUUID().toString())
                     .userEmail(userEmail)
-                    .expiryDate(Date.from(LocalDateTime.now().plusHours(24).toInstant(ZoneOffset.UTC)))
+                    .creationDate(now)
+                    .expiryDate(new Date(now.getTime() + PASSWORD_RESET_TOKEN_VALIDITY_MILLIS))
+                    .dedupKey(passwordResetDedupKey(userEmail, now))
                     .build();
-            return passwordResetTokenRepository.insert(token);
+            final PasswordResetToken token = passwordResetTokenRepository.findRecentOrInsert(candidate);
+            return candidate.getToken().equals(token.getToken()) ? Optional.of(token) : Optional.empty();
         } catch (UsernameNotFoundException e) {
             throw new UserNotFoundException(e);
         }
     }
 
+    private String passwordResetDedupKey(String userEmail, Date now) {
+        // A window of 0 ms gives every millisecond its own key, which turns deduplication off
+        return userEmail + '/' + now.getTime() / Math.max(passwordResetDedupWindowMillis, 1L);
+    }
+
     public void confirmResetPassword(String token, String password) {
         final PasswordResetToken passwordResetToken = passwordResetTokenRepository
-                .findByToken(token)
-                .orElseThrow(() -> new PasswordResetTokenNotFoundException(token));
-        if (passwordResetToken.getExpiryDate().after(new Date())) {
-            final User user = userRepository
-                    .findByEmail(passwordResetToken.getUserEmail())
-                    .orElseThrow(() -> new DataIntegrityException(PasswordResetToken.class, passwordResetToken.getId()));
-            userRepository.updateUserPassword(user.getId(), passwordEncoder.encode(password));
-            if (UserStatus.EMAIL_VERIFICATION_PENDING == user.getStatus()) {
-                userRepository.updateUserStatus(user.getId(), UserStatus.SUBSCRIPTION_PENDING);
-            }
-            passwordResetTokenRepository.save(passwordResetToken.toBuilder().expiryDate(new Date()).build());
-        } else {
-            throw new PasswordResetTokenExpiredException(token);
+                .consumeToken(token, new Date())
+                .orElseThrow(() -> unconsumableTokenException(token));
+        if (!userRepository.resetUserPassword(passwordResetToken.getUserEmail(), passwordEncoder.encode(password))) {
+            throw new DataIntegrityException(PasswordResetToken.class, passwordResetToken.getId());
         }
+        authenticationCache.invalidateUser(passwordResetToken.getUserEmail());
+    }
+
+    private RuntimeException unconsumableTokenException(String token) {
+        if (passwordResetTokenRepository.findByToken(token).isPresent()) {
+            return new PasswordResetTokenExpiredException(token);
+        }
+        return new PasswordResetTokenNotFoundException(token);
     }
 
     public User getUserByApiKey(String apiKey) {
-        return userRepository.findByApiKey(apiKey).orElseThrow(BarracksAuthenticationException::new);
+        final long start = System.nanoTime();
+        Optional<User> user = Optional.empty();
+        try {
+            user = authenticationCache.getUserByApiKey(apiKey);
+        } finally {
+            authenticationMetrics.record(AuthenticationStage.USER_FIND_BY_API_KEY, user.isPresent(), start);
+        }
+        return user.orElseThrow(BarracksAuthenticationException::new);
     }
 
     public User getUserByEmail(String email) {
-        return userRepository.findByEmail(email).orElseThrow(UserNotFoundException::new);
+        final long start = System.nanoTime();
+        Optional<User> user = Optional.empty();
+        try {
+            user = userRepository.findByEmail(email);
+        } finally {
+            authenticationMetrics.record(AuthenticationStage.USER_FIND_BY_EMAIL, user.isPresent(), start);
+        }
+        return user.orElseThrow(UserNotFoundException::new);
+    }
+
+    public User getCachedUserByEmail(String email) {
+        return authenticationCache.getUserByEmail(email).orElseThrow(UserNotFoundException::new);
     }
 
     public User getUserById(String userId) {
@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms of the authentication stages, by token type and outcome. Percentiles are exported for the last
+ * completed window, so that a spike is not diluted by hours of normal traffic; counts are cumulative.
+ */
+@Component
+public class AuthenticationMetrics implements PublicMetrics {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int TOKEN_TYPE_SLOTS = TokenType.values().length + 1;
+
+    private final long windowNanos;
+    private final AtomicReferenceArray<LatencyWindow> windows;
+
+    @Autowired
+    public AuthenticationMetrics(@Value("${io.barracks.authorizationservice.auth_metrics.window_ms:60000}") long windowMillis) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.windows = new AtomicReferenceArray<>(AuthenticationStage.values().length * TOKEN_TYPE_SLOTS * 2);
+    }
+
+    public void record(AuthenticationStage stage, boolean success, long startNanos) {
+        record(stage, null, success, startNanos);
+    }
+
+    public void record(AuthenticationStage stage, TokenType tokenType, boolean success, long startNanos) {
+        final long nanos = System.nanoTime() - startNanos;
+        window(stage, tokenType, success).record(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_TRACKABLE_MICROS));
+        if (stage.getServerTimingName() != null) {
+            ServerTiming.record(stage.getServerTimingName(), nanos);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final long now = System.nanoTime();
+        final List<Metric<?>> metrics = new ArrayList<>();
+        for (int i = 0; i < windows.length(); i++) {
+            final LatencyWindow window = windows.get(i);
+            if (window != null) {
+                final Histogram histogram = window.rotate(now, windowNanos);
+                metrics.add(new Metric<>(window.name + ".count", window.count.sum()));
+                metrics.add(new Metric<>(window.name + ".p50", toMillis(histogram.getValueAtPercentile(50.0))));
+                metrics.add(new Metric<>(window.name + ".p95", toMillis(histogram.getValueAtPercentile(95.0))));
+                metrics.add(new Metric<>(window.name + ".p99", toMillis(histogram.getValueAtPercentile(99.0))));
+                metrics.add(new Metric<>(window.name + ".p999", toMillis(histogram.getValueAtPercentile(99.9))));
+                metrics.add(new Metric<>(window.name + ".max", toMillis(histogram.getMaxValue())));
+            }
+        }
+        return metrics;
+    }
+
+    private LatencyWindow window(AuthenticationStage stage, TokenType tokenType, boolean success) {
+        final int index = (stage.ordinal() * TOKEN_TYPE_SLOTS + (tokenType == null ? 0 : tokenType.ordinal() + 1)) * 2 + (success ? 1 : 0);
+        LatencyWindow window = windows.get(index);
+        if (window == null) {
+            windows.compareAndSet(index, null, new LatencyWindow(name(stage, tokenType, success)));
+            window = windows.get(index);
+        }
+        return window;
+    }
+
+    private static String name(AuthenticationStage stage, TokenType tokenType, boolean success) {
+        return "auth.latency." + stage.getName()
+                + (tokenType == null ? "" : "." + tokenType.getName())
+                + (success ? ".success" : ".failure");
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static final class LatencyWindow {
+
+        private final String name;
+        private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 2);
+        private final LongAdder count = new LongAdder();
+        private Histogram last;
+        private long rotationNanos;
+
+        private LatencyWindow(String name) {
+            this.name = name;
+        }
+
+        private void record(long micros) {
+            recorder.recordValue(micros);
+            count.increment();
+        }
+
+        private synchronized Histogram rotate(long now, long windowNanos) {
+            if (last == null || now - rotationNanos >= windowNanos) {
+                last = recorder.getIntervalHistogram();
+                rotationNanos = now;
+            }
+            return last;
+        }
+    }
+
+}
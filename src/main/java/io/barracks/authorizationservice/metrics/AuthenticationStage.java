@@ -0,0 +1,53 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.metrics;
+
+public enum AuthenticationStage {
+
+    TOKEN_PARSE("token.parse", "jwt"),
+    TOKEN_USER_LOOKUP("token.user_lookup", "user"),
+    TOKEN_REVOCATION_CHECK("token.revocation_check", "token"),
+    TOKEN_TOTAL("token.total", null),
+    LOGIN_AUTHENTICATE("login.authenticate", null),
+    LOGIN_TOKEN_ISSUE("login.token_issue", null),
+    USER_FIND_BY_EMAIL("user.find_by_email", "user"),
+    USER_FIND_BY_API_KEY("user.find_by_api_key", "user");
+
+    private final String name;
+    // Stages enclosing other stages have no Server-Timing entry, their time would be reported twice
+    private final String serverTimingName;
+
+    AuthenticationStage(String name, String serverTimingName) {
+        this.name = name;
+        this.serverTimingName = serverTimingName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getServerTimingName() {
+        return serverTimingName;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Time spent in each stage of a single request, reported in the {@code Server-Timing} response header. A context is
+ * only bound to the thread handling the request while {@link ServerTimingFilter} is enabled, otherwise recording costs
+ * a thread local read.
+ */
+public final class ServerTiming {
+
+    private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos;
+    private final Map<String, Long> durations = new LinkedHashMap<>();
+
+    ServerTiming(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    public static void record(String name, long nanos) {
+        final ServerTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.add(name, nanos);
+        }
+    }
+
+    static ServerTiming bind(ServerTiming timing) {
+        final ServerTiming previous = CURRENT.get();
+        if (timing == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(timing);
+        }
+        return previous;
+    }
+
+    synchronized void add(String name, long nanos) {
+        durations.merge(name, nanos, Long::sum);
+    }
+
+    synchronized String toHeaderValue(long nowNanos) {
+        final StringBuilder value = new StringBuilder();
+        durations.forEach((name, nanos) -> append(value, name, nanos));
+        append(value, "total", nowNanos - startNanos);
+        return value.toString();
+    }
+
+    private static void append(StringBuilder value, String name, long nanos) {
+        if (value.length() > 0) {
+            value.append(", ");
+        }
+        value.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0));
+    }
+}
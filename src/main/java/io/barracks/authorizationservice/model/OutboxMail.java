@@ -0,0 +1,69 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.model;
+
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.PersistenceConstructor;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.List;
+
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE, onConstructor = @__(@PersistenceConstructor))
+@Getter
+@EqualsAndHashCode
+@ToString(exclude = {"text", "html"})
+@Document(collection = "mailOutbox")
+@CompoundIndex(def = "{'status': 1, 'nextAttemptDate': 1}")
+public class OutboxMail {
+
+    public static final int FAILED_MAIL_RETENTION_SECONDS = 30 * 24 * 60 * 60;
+
+    @Id
+    private final String id;
+    private final String from;
+    private final String replyTo;
+    private final List<String> recipients;
+    private final String subject;
+    private final String text;
+    private final String html;
+    private final OutboxMailStatus status;
+    private final int attempts;
+    private final Date nextAttemptDate;
+    // Tags the mails of the batch a dispatcher claimed last
+    @Indexed(sparse = true)
+    private final String claimId;
+    @CreatedDate
+    private final Date creationDate;
+    // Only failed mails have one, sent mails are deleted right away
+    @Indexed(expireAfterSeconds = FAILED_MAIL_RETENTION_SECONDS)
+    private final Date failureDate;
+
+}
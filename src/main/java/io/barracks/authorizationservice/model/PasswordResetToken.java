@@ -41,12 +41,19 @@ import java.util.Date;
 @Document(collection = "passwordResetTokens")
 public class PasswordResetToken {
 
+    public static final int EXPIRED_TOKEN_RETENTION_SECONDS = 7 * 24 * 60 * 60;
+
     @Id
     private final String id;
     @Indexed(unique = true)
     private final String token;
     private final String userEmail;
+    private final Date creationDate;
+    @Indexed(expireAfterSeconds = EXPIRED_TOKEN_RETENTION_SECONDS)
     private final Date expiryDate;
+    // One token per user and deduplication window, released once the token is consumed
+    @Indexed(unique = true, sparse = true)
+    private final String dedupKey;
 
     @JsonCreator
     public static PasswordResetToken fromJson() {
@@ -30,6 +30,8 @@ import org.hibernate.validator.constraints.NotBlank;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.PersistenceConstructor;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.Pattern;
@@ -39,6 +41,11 @@ import java.util.Date;
 @Builder(toBuilder = true)
 @AllArgsConstructor(access = AccessLevel.PRIVATE, onConstructor = @__({@PersistenceConstructor}))
 @Document(collection = "tokens")
+@CompoundIndexes({
+        @CompoundIndex(def = "{'userId': 1, 'startDate': 1, '_id': 1}"),
+        // Recently used tokens, read at warm-up
+        @CompoundIndex(def = "{'revoked': 1, 'lastUsed': -1}")
+})
 @Getter
 @ToString(exclude = {"value"})
 @EqualsAndHashCode
@@ -64,6 +71,11 @@ public class Token {
 
     private final boolean revoked;
 
+    @JsonFormat(pattern = DATE_FORMAT)
+    private final Date lastUsed;
+
+    private final long useCount;
+
     public Date getStartDate() {
         if (startDate != null) {
             return new Date(startDate.getTime());
@@ -71,4 +83,11 @@ public class Token {
         return null;
     }
 
+    public Date getLastUsed() {
+        if (lastUsed != null) {
+            return new Date(lastUsed.getTime());
+        }
+        return null;
+    }
+
 }
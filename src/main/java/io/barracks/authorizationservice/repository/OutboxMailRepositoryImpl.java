@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.repository;
+
+import com.mongodb.DBObject;
+import io.barracks.authorizationservice.model.OutboxMail;
+import io.barracks.authorizationservice.model.OutboxMailStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.*;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class OutboxMailRepositoryImpl implements OutboxMailRepositoryCustom {
+
+    private static final String ID_KEY = "_id";
+    private static final String STATUS_KEY = "status";
+    private static final String NEXT_ATTEMPT_DATE_KEY = "nextAttemptDate";
+    private static final String ATTEMPTS_KEY = "attempts";
+    private static final String FAILURE_DATE_KEY = "failureDate";
+    private static final String CLAIM_ID_KEY = "claimId";
+
+    private final MongoOperations operations;
+
+    @Autowired
+    public OutboxMailRepositoryImpl(MongoOperations operations) {
+        this.operations = operations;
+    }
+
+    @Override
+    public List<OutboxMail> claimMails(Collection<String> mailIds, Date now, Date leaseEnd, int limit) {
+        final List<Object> candidateIds = new ArrayList<>(mailIds);
+        if (candidateIds.size() < limit) {
+            final Query dueMails = Query.query(due(now))
+                    .with(new Sort(Sort.Direction.ASC, NEXT_ATTEMPT_DATE_KEY))
+                    .limit(limit - candidateIds.size());
+            dueMails.fields().include(ID_KEY);
+            operations.find(dueMails, DBObject.class, operations.getCollectionName(OutboxMail.class))
+                    .forEach(mail -> candidateIds.add(mail.get(ID_KEY)));
+        }
+        if (candidateIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // Candidates another dispatcher claimed in the meantime are no longer due and are left out
+        final String claimId = UUID.randomUUID().toString();
+        final int claimed = operations.updateMulti(
+                Query.query(where(ID_KEY).in(candidateIds).andOperator(due(now))),
+                new Update().set(CLAIM_ID_KEY, claimId).set(NEXT_ATTEMPT_DATE_KEY, leaseEnd).inc(ATTEMPTS_KEY, 1),
+                OutboxMail.class
+        ).getN();
+        if (claimed == 0) {
+            return Collections.emptyList();
+        }
+        return operations.find(Query.query(where(CLAIM_ID_KEY).is(claimId)), OutboxMail.class);
+    }
+
+    @Override
+    public void rescheduleMail(String mailId, Date nextAttemptDate) {
+        operations.updateFirst(
+                Query.query(where(ID_KEY).is(mailId)),
+                Update.update(NEXT_ATTEMPT_DATE_KEY, nextAttemptDate),
+                OutboxMail.class
+        );
+    }
+
+    @Override
+    public void markMailAsFailed(String mailId) {
+        operations.updateFirst(
+                Query.query(where(ID_KEY).is(mailId)),
+                Update.update(STATUS_KEY, OutboxMailStatus.FAILED).set(FAILURE_DATE_KEY, new Date()),
+                OutboxMail.class
+        );
+    }
+
+    private Criteria due(Date now) {
+        return where(STATUS_KEY).is(OutboxMailStatus.PENDING).and(NEXT_ATTEMPT_DATE_KEY).lte(now);
+    }
+}
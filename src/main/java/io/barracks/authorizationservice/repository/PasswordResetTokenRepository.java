@@ -29,7 +29,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 
 import java.util.Optional;
 
-public interface PasswordResetTokenRepository extends MongoRepository<PasswordResetToken, String> {
+public interface PasswordResetTokenRepository extends MongoRepository<PasswordResetToken, String>, PasswordResetTokenRepositoryCustom {
 
     Optional<PasswordResetToken> findByToken(String token);
 
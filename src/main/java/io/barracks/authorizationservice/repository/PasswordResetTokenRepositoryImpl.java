@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.repository;
+
+import io.barracks.authorizationservice.model.PasswordResetToken;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Date;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class PasswordResetTokenRepositoryImpl implements PasswordResetTokenRepositoryCustom {
+
+    private static final String TOKEN_KEY = "token";
+    private static final String USER_EMAIL_KEY = "userEmail";
+    private static final String CREATION_DATE_KEY = "creationDate";
+    private static final String EXPIRY_DATE_KEY = "expiryDate";
+    private static final String DEDUP_KEY_KEY = "dedupKey";
+
+    private final MongoOperations operations;
+
+    @Autowired
+    public PasswordResetTokenRepositoryImpl(MongoOperations operations) {
+        this.operations = operations;
+    }
+
+    @Override
+    public PasswordResetToken findRecentOrInsert(PasswordResetToken candidate) {
+        final Query query = Query.query(where(DEDUP_KEY_KEY).is(candidate.getDedupKey()));
+        final Update update = new Update()
+                .setOnInsert(TOKEN_KEY, candidate.getToken())
+                .setOnInsert(USER_EMAIL_KEY, candidate.getUserEmail())
+                .setOnInsert(CREATION_DATE_KEY, candidate.getCreationDate())
+                .setOnInsert(EXPIRY_DATE_KEY, candidate.getExpiryDate());
+        try {
+            return operations.findAndModify(
+                    query,
+                    update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    PasswordResetToken.class
+            );
+        } catch (DuplicateKeyException e) {
+            // A concurrent request inserted the token of this window first
+            return operations.findOne(query, PasswordResetToken.class);
+        }
+    }
+
+    @Override
+    public Optional<PasswordResetToken> consumeToken(String token, Date now) {
+        return Optional.ofNullable(operations.findAndModify(
+                Query.query(where(TOKEN_KEY).is(token).and(EXPIRY_DATE_KEY).gt(now)),
+                Update.update(EXPIRY_DATE_KEY, now).unset(DEDUP_KEY_KEY),
+                FindAndModifyOptions.options().returnNew(false),
+                PasswordResetToken.class
+        ));
+    }
+
+}
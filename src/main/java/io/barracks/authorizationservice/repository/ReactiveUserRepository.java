@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.repository;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.async.client.MongoDatabase;
+import io.barracks.authorizationservice.config.ReactiveMongoConfig;
+import io.barracks.authorizationservice.model.User;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static com.mongodb.client.model.Filters.eq;
+
+@Repository
+@ConditionalOnProperty(name = ReactiveMongoConfig.ENABLED_PROPERTY, havingValue = "true")
+public class ReactiveUserRepository {
+
+    private final MongoExceptionTranslator exceptionTranslator = new MongoExceptionTranslator();
+    private final MongoCollection<Document> collection;
+    private final MongoConverter converter;
+
+    @Autowired
+    public ReactiveUserRepository(MongoDatabase asyncMongoDatabase, MongoOperations operations) {
+        this.collection = asyncMongoDatabase.getCollection(operations.getCollectionName(User.class));
+        this.converter = operations.getConverter();
+    }
+
+    public CompletableFuture<Optional<User>> findByEmail(String email) {
+        return findOne(eq("email", email));
+    }
+
+    public CompletableFuture<Optional<User>> findByApiKey(String apiKey) {
+        return findOne(eq("apiKey", apiKey));
+    }
+
+    private CompletableFuture<Optional<User>> findOne(Bson filter) {
+        final CompletableFuture<Optional<User>> future = new CompletableFuture<>();
+        collection.find(filter).first((document, throwable) -> {
+            if (throwable != null) {
+                future.completeExceptionally(translate(throwable));
+            } else {
+                future.complete(Optional.ofNullable(document).map(this::toUser));
+            }
+        });
+        return future;
+    }
+
+    private Throwable translate(Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            final DataAccessException translated = exceptionTranslator.translateExceptionIfPossible((RuntimeException) throwable);
+            if (translated != null) {
+                return translated;
+            }
+        }
+        return throwable;
+    }
+
+    private User toUser(Document document) {
+        return converter.read(User.class, new BasicDBObject(document));
+    }
+
+}
@@ -32,4 +32,6 @@ import java.util.Optional;
 public interface TokenRepository extends MongoRepository<Token, String>, TokenRepositoryCustom {
 
     Optional<Token> findByValue(String value);
+
+    long countByUserId(String userId);
 }
@@ -25,11 +25,29 @@
 package io.barracks.authorizationservice.repository;
 
 import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.TokenCursor;
+import io.barracks.authorizationservice.model.TokenUsage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.util.CloseableIterator;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface TokenRepositoryCustom {
     Page<Token> getTokensByUserId(String userId, Pageable pageable);
 
+    List<Token> getTokensByUserIdAfter(String userId, TokenCursor after, int limit);
+
+    CloseableIterator<Token> streamTokenSummariesByUserIdAfter(String userId, TokenCursor after, int limit);
+
     Token revokeToken(String value);
+
+    long revokeTokensOfUser(String userId, Collection<String> tokenIds);
+
+    long revokeAllTokensOfUser(String userId);
+
+    void recordTokenUsages(List<TokenUsage> usages);
+
+    List<Token> getRecentlyUsedTokens(int limit);
 }
@@ -24,16 +24,26 @@
 
 package io.barracks.authorizationservice.repository;
 
+import com.mongodb.WriteResult;
+import io.barracks.authorizationservice.exception.InvalidCursorException;
+import org.bson.types.ObjectId;
 import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.TokenCursor;
+import io.barracks.authorizationservice.model.TokenUsage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 
+import java.util.Collection;
 import java.util.List;
 
 import static org.springframework.data.mongodb.core.query.Criteria.where;
@@ -41,7 +51,13 @@ import static org.springframework.data.mongodb.core.query.Query.query;
 
 public class TokenRepositoryImpl implements TokenRepositoryCustom {
 
+    private static final String ID_KEY = "_id";
     private static final String USER_ID_KEY = "userId";
+    private static final String START_DATE_KEY = "startDate";
+    private static final String VALUE_KEY = "value";
+    private static final String REVOKED_KEY = "revoked";
+    private static final String LAST_USED_KEY = "lastUsed";
+    private static final String USE_COUNT_KEY = "useCount";
     private final MongoOperations operations;
 
     @Autowired
@@ -58,14 +74,98 @@ public class TokenRepositoryImpl implements TokenRepositoryCustom {
         return new PageImpl<>(tokens, pageable, count);
     }
 
+    @Override
+    public List<Token> getTokensByUserIdAfter(String userId, TokenCursor after, int limit) {
+        return operations.find(tokensByUserIdAfter(userId, after, limit), Token.class);
+    }
+
+    @Override
+    public CloseableIterator<Token> streamTokenSummariesByUserIdAfter(String userId, TokenCursor after, int limit) {
+        final Query query = tokensByUserIdAfter(userId, after, limit);
+        query.fields().exclude(VALUE_KEY);
+        return operations.stream(query, Token.class);
+    }
+
+    private Query tokensByUserIdAfter(String userId, TokenCursor after, int limit) {
+        final Criteria criteria = where(USER_ID_KEY).is(userId);
+        if (after != null) {
+            criteria.orOperator(afterCursor(after));
+        }
+        return query(criteria)
+                .with(new Sort(Sort.Direction.ASC, START_DATE_KEY, ID_KEY))
+                .limit(limit);
+    }
+
+    private Criteria[] afterCursor(TokenCursor after) {
+        // BSON only orders values of the same type, a String bound would never match an ObjectId id
+        final ObjectId afterId = cursorId(after);
+        if (after.getStartDate() == null) {
+            return new Criteria[]{
+                    where(START_DATE_KEY).is(null).and(ID_KEY).gt(afterId),
+                    where(START_DATE_KEY).ne(null)
+            };
+        }
+        return new Criteria[]{
+                where(START_DATE_KEY).is(after.getStartDate()).and(ID_KEY).gt(afterId),
+                where(START_DATE_KEY).gt(after.getStartDate())
+        };
+    }
+
+    private static ObjectId cursorId(TokenCursor after) {
+        try {
+            return new ObjectId(after.getId());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(after.encode(), e);
+        }
+    }
+
     @Override
     public Token revokeToken(String tokenId) {
-        return updateTokenField(tokenId, "revoked", true);
+        return updateTokenField(tokenId, REVOKED_KEY, true);
+    }
+
+    @Override
+    public long revokeTokensOfUser(String userId, Collection<String> tokenIds) {
+        return revokeTokens(where(USER_ID_KEY).is(userId).and(ID_KEY).in(tokenIds).and(REVOKED_KEY).is(false));
+    }
+
+    @Override
+    public long revokeAllTokensOfUser(String userId) {
+        return revokeTokens(where(USER_ID_KEY).is(userId).and(REVOKED_KEY).is(false));
+    }
+
+    private long revokeTokens(Criteria criteria) {
+        final WriteResult result = operations.updateMulti(query(criteria), Update.update(REVOKED_KEY, true), Token.class);
+        return result.getN();
+    }
+
+    @Override
+    public void recordTokenUsages(List<TokenUsage> usages) {
+        final BulkOperations bulk = operations.bulkOps(BulkOperations.BulkMode.UNORDERED, Token.class);
+        // Bulk operations skip the query mapping, ids must be given the type they are stored with
+        usages.forEach(usage -> bulk.updateOne(
+                query(where(ID_KEY).is(storedId(usage.getTokenId()))),
+                new Update().max(LAST_USED_KEY, usage.getLastUsed()).inc(USE_COUNT_KEY, usage.getUseCount())
+        ));
+        bulk.execute();
+    }
+
+    @Override
+    public List<Token> getRecentlyUsedTokens(int limit) {
+        final Query query = query(where(REVOKED_KEY).is(false).and(LAST_USED_KEY).exists(true))
+                .with(new Sort(Sort.Direction.DESC, LAST_USED_KEY))
+                .limit(limit);
+        return operations.find(query, Token.class);
+    }
+
+    private static Object storedId(String id) {
+        // Valid hex ids are stored as ObjectIds, as the query mapping of regular queries assumes
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
     }
 
     Token updateTokenField(String tokenId, String fieldName, Object field) {
         return operations.findAndModify(
-                Query.query(where("_id").is(tokenId)),
+                Query.query(where(ID_KEY).is(tokenId)),
                 Update.update(fieldName, field),
                 FindAndModifyOptions.options().returnNew(true),
                 Token.class
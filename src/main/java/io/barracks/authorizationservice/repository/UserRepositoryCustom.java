@@ -34,4 +34,6 @@ public interface UserRepositoryCustom {
 
     Optional<User> updateUserPassword(String userId, String password);
 
+    boolean resetUserPassword(String email, String password);
+
 }
@@ -24,6 +24,7 @@
 
 package io.barracks.authorizationservice.repository;
 
+import com.mongodb.WriteResult;
 import io.barracks.authorizationservice.model.User;
 import io.barracks.authorizationservice.model.UserStatus;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,6 +38,10 @@ import java.util.Optional;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 public class UserRepositoryImpl implements UserRepositoryCustom {
+    private static final String EMAIL_KEY = "email";
+    private static final String STATUS_KEY = "status";
+    private static final String PASSWORD_KEY = "encryptedPassword";
+
     private final MongoOperations operations;
 
     @Autowired
@@ -46,12 +51,29 @@ public class UserRepositoryImpl implements UserRepositoryCustom {
 
     @Override
     public Optional<User> updateUserStatus(String userId, UserStatus status) {
-        return Optional.ofNullable(updateUserField(userId, "status", status));
+        return Optional.ofNullable(updateUserField(userId, STATUS_KEY, status));
     }
 
     @Override
     public Optional<User> updateUserPassword(String userId, String password) {
-        return Optional.ofNullable(updateUserField(userId, "encryptedPassword", password));
+        return Optional.ofNullable(updateUserField(userId, PASSWORD_KEY, password));
+    }
+
+    @Override
+    public boolean resetUserPassword(String email, String password) {
+        final WriteResult result = operations.updateFirst(
+                Query.query(where(EMAIL_KEY).is(email).and(STATUS_KEY).ne(UserStatus.EMAIL_VERIFICATION_PENDING)),
+                Update.update(PASSWORD_KEY, password),
+                User.class
+        );
+        if (result.getN() > 0) {
+            return true;
+        }
+        return operations.updateFirst(
+                Query.query(where(EMAIL_KEY).is(email).and(STATUS_KEY).is(UserStatus.EMAIL_VERIFICATION_PENDING)),
+                Update.update(PASSWORD_KEY, password).set(STATUS_KEY, UserStatus.SUBSCRIPTION_PENDING),
+                User.class
+        ).getN() > 0;
     }
 
     User updateUserField(String userId, String fieldName, Object field) {
@@ -24,29 +24,44 @@
 
 package io.barracks.authorizationservice.rest;
 
+import io.barracks.authorizationservice.audit.AuditLog;
+import io.barracks.authorizationservice.config.ReactiveMongoConfig;
 import io.barracks.authorizationservice.manager.UserManager;
+import io.barracks.authorizationservice.model.AuditEventType;
 import io.barracks.authorizationservice.model.User;
 import io.barracks.authorizationservice.rest.entity.DeviceAuthenticationEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
 @CrossOrigin
 @RestController
 @RequestMapping("/device")
+@ConditionalOnProperty(name = ReactiveMongoConfig.ENABLED_PROPERTY, havingValue = "false", matchIfMissing = true)
 public class DeviceAuthenticationResource {
 
     private UserManager userManager;
+    private AuditLog auditLog;
 
     @Autowired
-    public DeviceAuthenticationResource(UserManager userManager) {
+    public DeviceAuthenticationResource(UserManager userManager, AuditLog auditLog) {
         this.userManager = userManager;
+        this.auditLog = auditLog;
     }
 
     @RequestMapping(value = "/authenticate", method = RequestMethod.POST)
-    public User authenticateDevice(@Valid @RequestBody DeviceAuthenticationEntity entity) {
-        return userManager.getUserByApiKey(entity.getApiKey());
+    public User authenticateDevice(@Valid @RequestBody DeviceAuthenticationEntity entity, HttpServletRequest request) {
+        try {
+            final User user = userManager.getUserByApiKey(entity.getApiKey());
+            auditLog.record(AuditEventType.DEVICE_AUTHENTICATION_SUCCESS, user.getId(), request.getRemoteAddr());
+            return user;
+        } catch (RuntimeException e) {
+            auditLog.record(AuditEventType.DEVICE_AUTHENTICATION_FAILURE, null, request.getRemoteAddr());
+            throw e;
+        }
     }
 
 }
@@ -0,0 +1,73 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.rest;
+
+import io.barracks.authorizationservice.audit.AuditLog;
+import io.barracks.authorizationservice.config.ReactiveMongoConfig;
+import io.barracks.authorizationservice.manager.ReactiveUserManager;
+import io.barracks.authorizationservice.model.AuditEventType;
+import io.barracks.authorizationservice.model.User;
+import io.barracks.authorizationservice.rest.entity.DeviceAuthenticationEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+import java.util.concurrent.CompletionException;
+
+@CrossOrigin
+@RestController
+@RequestMapping("/device")
+@ConditionalOnProperty(name = ReactiveMongoConfig.ENABLED_PROPERTY, havingValue = "true")
+public class ReactiveDeviceAuthenticationResource {
+
+    private final ReactiveUserManager reactiveUserManager;
+    private final AuditLog auditLog;
+
+    @Autowired
+    public ReactiveDeviceAuthenticationResource(ReactiveUserManager reactiveUserManager, AuditLog auditLog) {
+        this.reactiveUserManager = reactiveUserManager;
+        this.auditLog = auditLog;
+    }
+
+    @RequestMapping(value = "/authenticate", method = RequestMethod.POST)
+    public DeferredResult<User> authenticateDevice(@Valid @RequestBody DeviceAuthenticationEntity entity, HttpServletRequest request) {
+        final DeferredResult<User> result = new DeferredResult<>();
+        final String remoteAddress = request.getRemoteAddr();
+        reactiveUserManager.getUserByApiKey(entity.getApiKey()).whenComplete((user, throwable) -> {
+            if (throwable != null) {
+                auditLog.record(AuditEventType.DEVICE_AUTHENTICATION_FAILURE, null, remoteAddress);
+                result.setErrorResult(throwable instanceof CompletionException ? throwable.getCause() : throwable);
+            } else {
+                auditLog.record(AuditEventType.DEVICE_AUTHENTICATION_SUCCESS, user.getId(), remoteAddress);
+                result.setResult(user);
+            }
+        });
+        return result;
+    }
+
+}
@@ -24,27 +24,45 @@
 
 package io.barracks.authorizationservice.rest;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import io.barracks.authorizationservice.manager.TokenManager;
+import io.barracks.authorizationservice.model.CursorPage;
 import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.TokenCursor;
+import io.barracks.authorizationservice.model.TokenRevocation;
 import io.barracks.authorizationservice.model.User;
 import io.barracks.authorizationservice.rest.entity.TokenEntity;
+import io.barracks.authorizationservice.rest.entity.TokenRevocationEntity;
 import io.barracks.authorizationservice.security.BarracksUserDetails;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.PagedResources;
 import org.springframework.hateoas.Resource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 
 @RestController
 @RequestMapping("/tokens")
 public class TokenResource {
 
+    static final int MAX_CURSOR_PAGE_SIZE = 100;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern(Token.DATE_FORMAT).withZone(ZoneOffset.UTC);
+
     private final TokenManager tokenManager;
     private final PagedResourcesAssembler<Token> assembler;
 
@@ -67,6 +85,77 @@ public class TokenResource {
         return assembler.toResource(tokens);
     }
 
+    @RequestMapping(method = RequestMethod.GET, params = {"cursor", "view!=compact"})
+    public CursorPage<Token> getTokens(
+            Authentication authentication,
+            @RequestParam("cursor") String cursor,
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            @RequestParam(value = "count", defaultValue = "false") boolean count
+    ) {
+        final User user = ((BarracksUserDetails) (authentication.getDetails())).getUser();
+        return tokenManager.getTokensForUser(user, cursor, Math.max(1, Math.min(limit, MAX_CURSOR_PAGE_SIZE)), count);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, params = "view=compact")
+    public ResponseEntity<StreamingResponseBody> getTokenSummaries(
+            Authentication authentication,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "20") int limit
+    ) {
+        final User user = ((BarracksUserDetails) (authentication.getDetails())).getUser();
+        final int pageSize = Math.max(1, Math.min(limit, MAX_CURSOR_PAGE_SIZE));
+        final CloseableIterator<Token> tokens = tokenManager.streamTokenSummariesForUser(user, cursor, pageSize);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(outputStream -> {
+                    try {
+                        final JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream);
+                        writeTokenSummaries(generator, tokens, pageSize);
+                        generator.flush();
+                    } finally {
+                        tokens.close();
+                    }
+                });
+    }
+
+    private void writeTokenSummaries(JsonGenerator generator, CloseableIterator<Token> tokens, int pageSize) throws IOException {
+        Token last = null;
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("content");
+        for (int written = 0; written < pageSize && tokens.hasNext(); written++) {
+            last = tokens.next();
+            generator.writeStartObject();
+            generator.writeStringField("id", last.getId());
+            generator.writeStringField("label", last.getLabel());
+            if (last.getStartDate() != null) {
+                generator.writeStringField("startDate", DATE_FORMATTER.format(last.getStartDate().toInstant()));
+            }
+            generator.writeBooleanField("revoked", last.isRevoked());
+            if (last.getLastUsed() != null) {
+                generator.writeStringField("lastUsed", DATE_FORMATTER.format(last.getLastUsed().toInstant()));
+            }
+            generator.writeNumberField("useCount", last.getUseCount());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        if (last != null && tokens.hasNext()) {
+            generator.writeStringField("next", TokenCursor.after(last).encode());
+        }
+        generator.writeEndObject();
+    }
+
+    @RequestMapping(value = "/revoke", method = RequestMethod.PUT)
+    public TokenRevocation revokeTokens(@Valid @RequestBody TokenRevocationEntity entity, Authentication authentication) {
+        final User user = ((BarracksUserDetails) (authentication.getDetails())).getUser();
+        return tokenManager.revokeTokensOfUser(user, entity.getIds());
+    }
+
+    @RequestMapping(value = "/revoke-all", method = RequestMethod.PUT)
+    public TokenRevocation revokeAllTokens(Authentication authentication) {
+        final User user = ((BarracksUserDetails) (authentication.getDetails())).getUser();
+        return tokenManager.revokeAllTokensOfUser(user);
+    }
+
     @RequestMapping(value = "/{tokenValue}/revoke", method = RequestMethod.PUT)
     public Token revokeToken(@PathVariable String tokenValue) {
         // TODO make sure the token belongs to the user
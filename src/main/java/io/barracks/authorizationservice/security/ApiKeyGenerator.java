@@ -34,8 +34,9 @@ public class ApiKeyGenerator {
 
     private static final int KEY_LENGTH = 256;
 
+    private final SecureRandom random = new SecureRandom();
+
     public String generate() {
-        SecureRandom random = new SecureRandom();
         byte bytes[] = new byte[KEY_LENGTH / 8];
         random.nextBytes(bytes);
         return DatatypeConverter.printHexBinary(bytes).toLowerCase();
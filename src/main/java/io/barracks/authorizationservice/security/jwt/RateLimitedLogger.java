@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.security.jwt;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+public class RateLimitedLogger {
+
+    private final Logger logger;
+    private final int maxPerInterval;
+    private final long intervalNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong windowStart;
+    private final AtomicInteger windowCount = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public RateLimitedLogger(Logger logger, int maxPerInterval, long interval, TimeUnit unit) {
+        this(logger, maxPerInterval, interval, unit, System::nanoTime);
+    }
+
+    RateLimitedLogger(Logger logger, int maxPerInterval, long interval, TimeUnit unit, LongSupplier nanoClock) {
+        this.logger = logger;
+        this.maxPerInterval = maxPerInterval;
+        this.intervalNanos = unit.toNanos(interval);
+        this.nanoClock = nanoClock;
+        this.windowStart = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    public void warn(String format, Object arg1, Object arg2) {
+        if (!logger.isWarnEnabled()) {
+            return;
+        }
+        if (tryAcquire()) {
+            final long dropped = suppressed.getAndSet(0);
+            if (dropped > 0) {
+                logger.warn("{} similar warnings were suppressed", dropped);
+            }
+            logger.warn(format, arg1, arg2);
+        } else {
+            suppressed.incrementAndGet();
+        }
+    }
+
+    private boolean tryAcquire() {
+        final long now = nanoClock.getAsLong();
+        final long start = windowStart.get();
+        if (now - start >= intervalNanos && windowStart.compareAndSet(start, now)) {
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() <= maxPerInterval;
+    }
+}
@@ -24,6 +24,8 @@
 
 package io.barracks.authorizationservice.security.jwt;
 
+import io.barracks.authorizationservice.audit.AuditLog;
+import io.barracks.authorizationservice.model.AuditEventType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.Authentication;
@@ -36,14 +38,18 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 public class StatelessAuthenticationFilter extends GenericFilterBean {
 
     public final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final RateLimitedLogger failureLogger = new RateLimitedLogger(logger, 10, 1, TimeUnit.SECONDS);
     private TokenAuthenticationService authenticationService;
+    private AuditLog auditLog;
 
-    public StatelessAuthenticationFilter(TokenAuthenticationService authenticationService) {
+    public StatelessAuthenticationFilter(TokenAuthenticationService authenticationService, AuditLog auditLog) {
         this.authenticationService = authenticationService;
+        this.auditLog = auditLog;
     }
 
     @Override
@@ -51,15 +57,20 @@ public class StatelessAuthenticationFilter extends GenericFilterBean {
         logger.debug("Authentication attempt from '{}'", request.getRemoteAddr());
         final HttpServletRequest httpServletRequest = (HttpServletRequest) request;
         try {
-            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            if (SecurityContextHolder.getContext().getAuthentication() == null
+                    && authenticationService.hasAuthenticationToken(httpServletRequest)) {
                 Authentication authentication = authenticationService.getAuthentication(httpServletRequest);
                 SecurityContextHolder.getContext().setAuthentication(authentication);
                 logger.debug("'{}' authenticated from '{}' ", authentication, request.getRemoteAddr());
             }
         } catch (Exception e) { // I know, it's bad, but it's OK... Jwt may fail in too many ways.
-            logger.warn("Authentication from '{}' failed with '{}'", request.getRemoteAddr(), e.getMessage());
+            failureLogger.warn("Authentication from '{}' failed with '{}'", request.getRemoteAddr(), e.getMessage());
+            auditLog.record(AuditEventType.TOKEN_AUTHENTICATION_FAILURE, null, request.getRemoteAddr());
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SecurityContextHolder.clearContext();
         }
-        chain.doFilter(request, response);
-        SecurityContextHolder.getContext().setAuthentication(null);
     }
 }
@@ -25,6 +25,12 @@
 package io.barracks.authorizationservice.security.jwt;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.barracks.authorizationservice.audit.AuditLog;
+import io.barracks.authorizationservice.metrics.AuthenticationMetrics;
+import io.barracks.authorizationservice.metrics.AuthenticationStage;
+import io.barracks.authorizationservice.model.AuditEventType;
+import io.barracks.authorizationservice.security.BarracksUserDetails;
 import io.barracks.authorizationservice.security.UserAuthentication;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,32 +49,48 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 public class StatelessLoginFilter extends AbstractAuthenticationProcessingFilter {
 
+    private static final ObjectReader CREDENTIALS_READER = new ObjectMapper().readerFor(CredentialsEntity.class);
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final RateLimitedLogger failureLogger = new RateLimitedLogger(logger, 10, 1, TimeUnit.SECONDS);
 
     private final TokenAuthenticationService tokenAuthenticationService;
     private final UserDetailsService userDetailsService;
+    private final AuditLog auditLog;
+    private final AuthenticationMetrics authenticationMetrics;
 
     public StatelessLoginFilter(
             String urlMapping, TokenAuthenticationService tokenAuthenticationService,
-            UserDetailsService userDetailsService, AuthenticationManager authManager
+            UserDetailsService userDetailsService, AuthenticationManager authManager, AuditLog auditLog,
+            AuthenticationMetrics authenticationMetrics
     ) {
         super(new AntPathRequestMatcher(urlMapping));
         this.userDetailsService = userDetailsService;
         this.tokenAuthenticationService = tokenAuthenticationService;
+        this.auditLog = auditLog;
+        this.authenticationMetrics = authenticationMetrics;
         setAuthenticationManager(authManager);
     }
 
     @Override
     public Authentication attemptAuthentication(HttpServletRequest request, HttpServletResponse response) throws IOException {
         logger.debug("Login attempt of {}", request.getRemoteAddr());
-        final CredentialsEntity credentials = new ObjectMapper().readValue(request.getInputStream(), CredentialsEntity.class);
+        final CredentialsEntity credentials = CREDENTIALS_READER.readValue(request.getInputStream());
         final UsernamePasswordAuthenticationToken loginToken = new UsernamePasswordAuthenticationToken(
                 credentials.getUsername(), credentials.getPassword()
         );
-        return getAuthenticationManager().authenticate(loginToken);
+        final long start = System.nanoTime();
+        Authentication authentication = null;
+        try {
+            authentication = getAuthenticationManager().authenticate(loginToken);
+            return authentication;
+        } finally {
+            authenticationMetrics.record(AuthenticationStage.LOGIN_AUTHENTICATE, authentication != null, start);
+        }
     }
 
     @Override
@@ -77,16 +99,32 @@ public class StatelessLoginFilter extends AbstractAuthenticationProcessingFilter
             FilterChain chain, Authentication authentication
     ) throws IOException, ServletException {
         logger.debug("Login success of {} with {}", request.getRemoteAddr(), authentication.getName());
-        final UserDetails authenticatedUser = userDetailsService.loadUserByUsername(authentication.getName());
-        final UserAuthentication userAuthentication = new UserAuthentication(authenticatedUser);
-        tokenAuthenticationService.addAuthentication(response, userAuthentication);
+        final long start = System.nanoTime();
+        boolean issued = false;
+        final UserAuthentication userAuthentication;
+        try {
+            final UserDetails authenticatedUser = userDetailsService.loadUserByUsername(authentication.getName());
+            userAuthentication = new UserAuthentication(authenticatedUser);
+            tokenAuthenticationService.addAuthentication(response, userAuthentication);
+            issued = true;
+        } finally {
+            authenticationMetrics.record(AuthenticationStage.LOGIN_TOKEN_ISSUE, issued, start);
+        }
+        auditLog.record(AuditEventType.LOGIN_SUCCESS, userId(userAuthentication), request.getRemoteAddr());
         SecurityContextHolder.getContext().setAuthentication(userAuthentication);
         chain.doFilter(request, response);
     }
 
     @Override
     protected void unsuccessfulAuthentication(HttpServletRequest request, HttpServletResponse response, AuthenticationException failed) throws IOException, ServletException {
-        logger.warn("Unsuccessful login {} from {}", failed, request.getRemoteAddr());
+        failureLogger.warn("Unsuccessful login {} from {}", failed, request.getRemoteAddr());
+        // The submitted email is not stored, it is attacker-controlled and may not belong to any user
+        auditLog.record(AuditEventType.LOGIN_FAILURE, null, request.getRemoteAddr());
         super.unsuccessfulAuthentication(request, response, failed);
     }
+
+    private static String userId(UserAuthentication authentication) {
+        final UserDetails details = authentication.getDetails();
+        return details instanceof BarracksUserDetails ? ((BarracksUserDetails) details).getUser().getId() : null;
+    }
 }
@@ -26,10 +26,15 @@ package io.barracks.authorizationservice.security.jwt;
 
 import io.barracks.authorizationservice.exception.BarracksAuthenticationException;
 import io.barracks.authorizationservice.manager.TokenManager;
+import io.barracks.authorizationservice.manager.TokenUsageRecorder;
 import io.barracks.authorizationservice.manager.UserManager;
+import io.barracks.authorizationservice.metrics.AuthenticationMetrics;
+import io.barracks.authorizationservice.metrics.AuthenticationStage;
+import io.barracks.authorizationservice.metrics.TokenType;
 import io.barracks.authorizationservice.model.Token;
 import io.barracks.authorizationservice.model.User;
 import io.barracks.authorizationservice.security.UserAuthentication;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -47,11 +52,20 @@ public class TokenAuthenticationService {
 
     private final TokenManager tokenManager;
     private final UserManager userManager;
+    private final TokenUsageRecorder tokenUsageRecorder;
+    private final AuthenticationMetrics authenticationMetrics;
 
     @Autowired
-    public TokenAuthenticationService(TokenManager tokenManager, UserManager userManager) {
+    public TokenAuthenticationService(
+            TokenManager tokenManager,
+            UserManager userManager,
+            TokenUsageRecorder tokenUsageRecorder,
+            AuthenticationMetrics authenticationMetrics
+    ) {
         this.tokenManager = tokenManager;
         this.userManager = userManager;
+        this.tokenUsageRecorder = tokenUsageRecorder;
+        this.authenticationMetrics = authenticationMetrics;
     }
 
     public void addAuthentication(HttpServletResponse response, UserAuthentication authentication) {
@@ -60,23 +74,62 @@ public class TokenAuthenticationService {
         response.addHeader(AUTH_HEADER_NAME, tokenManager.createTokenForUser(user, expiration));
     }
 
+    public boolean hasAuthenticationToken(HttpServletRequest request) {
+        return request.getHeader(AUTH_HEADER_NAME) != null;
+    }
+
     public Authentication getAuthentication(HttpServletRequest request) {
-        final String token = request.getHeader(AUTH_HEADER_NAME);
-        if (token != null) {
-            final String username = tokenManager.getEmailFromToken(token);
-            final User user = userManager.getUserByEmail(username);
-            if (isValidToken(token, user)) {
-                return new UserAuthentication(user);
+        final long start = System.nanoTime();
+        TokenType tokenType = TokenType.UNKNOWN;
+        boolean authenticated = false;
+        try {
+            final String token = request.getHeader(AUTH_HEADER_NAME);
+            final Claims claims = token == null ? null : parseToken(token);
+            if (claims != null) {
+                tokenType = claims.getExpiration() == null ? TokenType.API : TokenType.SESSION;
+                final User user = getUser(claims.getSubject(), tokenType);
+                if (isValidToken(token, claims.getExpiration(), user)) {
+                    authenticated = true;
+                    return new UserAuthentication(user);
+                }
+            }
+            throw new BarracksAuthenticationException();
+        } finally {
+            authenticationMetrics.record(AuthenticationStage.TOKEN_TOTAL, tokenType, authenticated, start);
+        }
+    }
+
+    private Claims parseToken(String token) {
+        final long start = System.nanoTime();
+        Claims claims = null;
+        try {
+            if (tokenManager.isWellFormedToken(token)) {
+                claims = tokenManager.parseToken(token);
             }
+            return claims;
+        } finally {
+            final TokenType tokenType = claims == null ? TokenType.UNKNOWN : claims.getExpiration() == null ? TokenType.API : TokenType.SESSION;
+            authenticationMetrics.record(AuthenticationStage.TOKEN_PARSE, tokenType, claims != null, start);
         }
-        throw new BarracksAuthenticationException();
     }
 
-    boolean isValidToken(String token, User user) {
+    private User getUser(String email, TokenType tokenType) {
+        final long start = System.nanoTime();
+        User user = null;
+        try {
+            user = userManager.getCachedUserByEmail(email);
+            return user;
+        } finally {
+            authenticationMetrics.record(AuthenticationStage.TOKEN_USER_LOOKUP, tokenType, user != null, start);
+        }
+    }
+
+    boolean isValidToken(String token, Date expiration, User user) {
         if (user != null) {
-            if (tokenManager.getTokenExpirationDate(token) == null) {
-                Token barracksToken = tokenManager.getTokenByValue(token);
+            if (expiration == null) {
+                final Token barracksToken = getToken(token);
                 if (barracksToken != null && !barracksToken.isRevoked()) {
+                    tokenUsageRecorder.record(barracksToken.getId());
                     return true;
                 }
                 throw new BarracksAuthenticationException();
@@ -85,4 +138,16 @@ public class TokenAuthenticationService {
         }
         return false;
     }
+
+    private Token getToken(String token) {
+        final long start = System.nanoTime();
+        Token barracksToken = null;
+        try {
+            barracksToken = tokenManager.getCachedTokenByValue(token);
+            return barracksToken;
+        } finally {
+            final boolean live = barracksToken != null && !barracksToken.isRevoked();
+            authenticationMetrics.record(AuthenticationStage.TOKEN_REVOCATION_CHECK, TokenType.API, live, start);
+        }
+    }
 }
@@ -24,6 +24,8 @@
 
 package io.barracks.authorizationservice.security.jwt;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -38,27 +40,45 @@ import java.util.UUID;
 @Service
 public class TokenHandler {
 
+    private static final int MAX_TOKEN_LENGTH = 4096;
+
     private final String secret;
+    private final JwtParser parser;
 
     @Autowired
     public TokenHandler(@Value("${io.barracks.authorizationservice.s3cr3t}") String s3cr3t) {
         this.secret = Base64.getEncoder().encodeToString(s3cr3t.getBytes(Charset.forName("UTF-8")));
+        // The parser holds no per-call state once configured, it is shared to avoid building an ObjectMapper per token
+        this.parser = Jwts.parser().setSigningKey(secret);
     }
 
     public String parseEmailFromToken(String token) {
-        return Jwts.parser()
-                .setSigningKey(secret)
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return parseClaims(token).getSubject();
     }
 
     public Date getTokenExpirationDate(String token) {
-        return Jwts.parser()
-                .setSigningKey(secret)
-                .parseClaimsJws(token)
-                .getBody()
-                .getExpiration();
+        return parseClaims(token).getExpiration();
+    }
+
+    public Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    /**
+     * Cheap structural check (header.payload.signature) used to reject garbage before it reaches the JWT parser,
+     * which reports every malformed input with a freshly filled exception.
+     */
+    public boolean isWellFormed(String token) {
+        if (token.isEmpty() || token.length() > MAX_TOKEN_LENGTH) {
+            return false;
+        }
+        int separators = 0;
+        for (int i = 0; i < token.length(); i++) {
+            if (token.charAt(i) == '.') {
+                separators++;
+            }
+        }
+        return separators == 2;
     }
 
     public String createTokenForEmail(String email, Date expiration) {
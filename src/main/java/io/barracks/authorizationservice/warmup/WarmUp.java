@@ -0,0 +1,235 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.barracks.authorizationservice.cache.AuthenticationCache;
+import io.barracks.authorizationservice.cache.HotKeySnapshotStore;
+import io.barracks.authorizationservice.mail.PasswordConfirmAccountMailer;
+import io.barracks.authorizationservice.mail.PasswordResetMailer;
+import io.barracks.authorizationservice.model.PasswordResetToken;
+import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.User;
+import io.barracks.authorizationservice.model.UserStatus;
+import io.barracks.authorizationservice.repository.TokenRepository;
+import io.barracks.authorizationservice.repository.UserRepository;
+import io.barracks.authorizationservice.rest.entity.DeviceAuthenticationEntity;
+import io.barracks.authorizationservice.security.jwt.CredentialsEntity;
+import io.barracks.authorizationservice.security.jwt.TokenHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Runs synthetic traffic through the hot code paths once the application has started, so that the first real requests
+ * neither pay for JIT compilation, serializer lookups nor connection establishment. The service only reports ready when
+ * it is done.
+ */
+@Component
+public class WarmUp implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final String SYNTHETIC_EMAIL = "warm-up@barracks.io";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Map<String, Object> steps = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile boolean ready;
+
+    @Value("${io.barracks.authorizationservice.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${io.barracks.authorizationservice.warmup.iterations:10000}")
+    private int iterations;
+
+    @Value("${io.barracks.authorizationservice.warmup.mongo_connections:10}")
+    private int mongoConnections;
+
+    @Value("${io.barracks.authorizationservice.warmup.preload_tokens:0}")
+    private int preloadTokens;
+
+    @Autowired
+    private TokenHandler tokenHandler;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    @Autowired
+    private PasswordResetMailer passwordResetMailer;
+
+    @Autowired
+    private PasswordConfirmAccountMailer passwordConfirmAccountMailer;
+
+    @Autowired
+    private TokenRepository tokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthenticationCache authenticationCache;
+
+    @Autowired
+    private HotKeySnapshotStore hotKeySnapshotStore;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Map<String, Object> getSteps() {
+        synchronized (steps) {
+            return new LinkedHashMap<>(steps);
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!enabled) {
+            ready = true;
+            return;
+        }
+        final Thread thread = new Thread(this::run, "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void run() {
+        final long start = System.nanoTime();
+        step("jwt", this::warmUpJwt);
+        step("jackson", this::warmUpJackson);
+        step("templates", this::warmUpTemplates);
+        step("mongo", this::warmUpMongo);
+        step("restore", hotKeySnapshotStore::restore);
+        if (preloadTokens > 0) {
+            step("preload", this::preloadHotUsers);
+        }
+        ready = true;
+        logger.info("Warm-up done in {} ms: {}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), getSteps());
+    }
+
+    private void step(String name, Callable<String> step) {
+        final long start = System.nanoTime();
+        try {
+            final String result = step.call();
+            steps.put(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms" + (result == null ? "" : ", " + result));
+        } catch (Exception e) {
+            logger.warn("Warm-up step '{}' failed", name, e);
+            steps.put(name, "failed: " + e.getMessage());
+        }
+    }
+
+    private String warmUpJwt() {
+        for (int i = 0; i < iterations; i++) {
+            final String token = tokenHandler.createTokenForEmail(SYNTHETIC_EMAIL);
+            tokenHandler.parseClaims(token);
+            tokenHandler.isWellFormed(token);
+            tokenHandler.isWellFormed(token.substring(1));
+        }
+        return null;
+    }
+
+    private String warmUpJackson() throws Exception {
+        final UserStatus[] statuses = UserStatus.values();
+        final Token token = Token.builder()
+                .id(UUID.randomUUID().toString())
+                .userId(UUID.randomUUID().toString())
+                .label("warm-up")
+                .value(UUID.randomUUID().toString())
+                .startDate(new Date())
+                .build();
+        for (int i = 0; i < iterations; i++) {
+            final User user = User.builder()
+                    .id(UUID.randomUUID().toString())
+                    .email(SYNTHETIC_EMAIL)
+                    .firstName("Warm")
+                    .lastName("Up")
+                    .apiKey(UUID.randomUUID().toString())
+                    .status(statuses[i % statuses.length])
+                    .build();
+            objectMapper.writeValueAsString(user);
+            objectMapper.writeValueAsString(token);
+            objectMapper.readValue("{\"apiKey\":\"" + user.getApiKey() + "\"}", DeviceAuthenticationEntity.class);
+            objectMapper.readValue("{\"username\":\"" + SYNTHETIC_EMAIL + "\",\"password\":\"warm-up\"}", CredentialsEntity.class);
+        }
+        return null;
+    }
+
+    private String warmUpTemplates() throws Exception {
+        final PasswordResetToken token = PasswordResetToken.builder()
+                .token(UUID.randomUUID().toString())
+                .userEmail(SYNTHETIC_EMAIL)
+                .creationDate(new Date())
+                .expiryDate(new Date())
+                .build();
+        for (int i = 0; i < iterations / 10; i++) {
+            passwordResetMailer.render(token);
+            passwordConfirmAccountMailer.render(token);
+        }
+        return null;
+    }
+
+    private String warmUpMongo() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(mongoConnections);
+        try {
+            final CyclicBarrier barrier = new CyclicBarrier(mongoConnections);
+            final List<Future<?>> pings = new ArrayList<>(mongoConnections);
+            for (int i = 0; i < mongoConnections; i++) {
+                pings.add(executor.submit(() -> {
+                    barrier.await();
+                    return mongoOperations.executeCommand("{ ping: 1 }");
+                }));
+            }
+            for (Future<?> ping : pings) {
+                ping.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return mongoConnections + " connections";
+    }
+
+    private String preloadHotUsers() {
+        final List<Token> tokens = tokenRepository.getRecentlyUsedTokens(preloadTokens);
+        tokens.forEach(authenticationCache::preloadToken);
+        final Set<String> userIds = tokens.stream().map(Token::getUserId).collect(Collectors.toSet());
+        int users = 0;
+        for (User user : userRepository.findAll(userIds)) {
+            authenticationCache.preloadUser(user);
+            users++;
+        }
+        return tokens.size() + " tokens, " + users + " users";
+    }
+
+}
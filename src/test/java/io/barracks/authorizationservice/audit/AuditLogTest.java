@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.audit;
+
+import io.barracks.authorizationservice.model.AuditEvent;
+import io.barracks.authorizationservice.model.AuditEventType;
+import io.barracks.authorizationservice.repository.AuditEventRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AuditLogTest {
+
+    @Mock
+    private AuditEventRepository auditEventRepository;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void write_whenEventsWereRecorded_shouldInsertThemInBatches() {
+        // Given
+        final AuditLog auditLog = new AuditLog(auditEventRepository, 16, 2, 10L, 1.0, 10);
+        auditLog.record(AuditEventType.LOGIN_SUCCESS, "userId", "10.0.0.1");
+        auditLog.record(AuditEventType.LOGIN_FAILURE, null, "10.0.0.2");
+        auditLog.record(AuditEventType.TOKEN_AUTHENTICATION_FAILURE, null, "10.0.0.3");
+        final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+
+        // When
+        final int first = auditLog.write();
+        final int second = auditLog.write();
+        final int third = auditLog.write();
+
+        // Then
+        assertThat(first).isEqualTo(2);
+        assertThat(second).isEqualTo(1);
+        assertThat(third).isEqualTo(0);
+        verify(auditEventRepository, times(2)).insert(captor.capture());
+        final List<AuditEvent> firstBatch = captor.getAllValues().get(0);
+        assertThat(firstBatch)
+                .extracting(AuditEvent::getType, AuditEvent::getPrincipal, AuditEvent::getRemoteAddress, AuditEvent::getWeight)
+                .containsExactly(
+                        tuple(AuditEventType.LOGIN_SUCCESS, "userId", "10.0.0.1", 1),
+                        tuple(AuditEventType.LOGIN_FAILURE, null, "10.0.0.2", 1)
+                );
+        assertThat(firstBatch).allMatch(event -> event.getDate() != null);
+    }
+
+    @Test
+    public void record_whenBufferIsFull_shouldDropWithoutBlocking() {
+        // Given
+        final AuditLog auditLog = new AuditLog(auditEventRepository, 4, 10, 10L, 1.0, 1);
+
+        // When
+        for (int i = 0; i < 6; i++) {
+            auditLog.record(AuditEventType.LOGIN_FAILURE, null, "10.0.0.1");
+        }
+
+        // Then
+        assertThat(auditLog.getBacklog()).isEqualTo(4);
+        assertThat(auditLog.getDroppedCount()).isEqualTo(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void record_whenBacklogExceedsSamplingThreshold_shouldKeepWeightedSample() {
+        // Given
+        final int samplingRate = 4;
+        final AuditLog auditLog = new AuditLog(auditEventRepository, 8192, 8192, 10L, 0.0, samplingRate);
+        final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+
+        // When
+        for (int i = 0; i < 4000; i++) {
+            auditLog.record(AuditEventType.LOGIN_FAILURE, null, "10.0.0.1");
+        }
+        auditLog.write();
+
+        // Then
+        verify(auditEventRepository).insert(captor.capture());
+        final List<AuditEvent> kept = captor.getValue();
+        assertThat(kept).allMatch(event -> event.getWeight() == samplingRate);
+        assertThat(kept.size() + auditLog.getSampledOutCount()).isEqualTo(4000);
+        assertThat(kept.size()).isBetween(800, 1200);
+    }
+
+    @Test
+    public void write_whenInsertFails_shouldCountLostEvents() {
+        // Given
+        final AuditLog auditLog = new AuditLog(auditEventRepository, 16, 10, 10L, 1.0, 1);
+        auditLog.record(AuditEventType.LOGIN_SUCCESS, "userId", "10.0.0.1");
+        auditLog.record(AuditEventType.LOGIN_SUCCESS, "userId", "10.0.0.1");
+        doThrow(new DataAccessResourceFailureException("down")).when(auditEventRepository).insert(anyListOf(AuditEvent.class));
+
+        // When
+        final int written = auditLog.write();
+
+        // Then
+        assertThat(written).isEqualTo(2);
+        assertThat(auditLog.getDroppedCount()).isEqualTo(2);
+        assertThat(auditLog.getBacklog()).isEqualTo(0);
+    }
+
+    @Test
+    public void write_whenInsertFailsUnexpectedly_shouldCountLostEventsAndKeepWriting() {
+        // Given
+        final AuditLog auditLog = new AuditLog(auditEventRepository, 16, 1, 10L, 1.0, 1);
+        auditLog.record(AuditEventType.LOGIN_SUCCESS, "userId", "10.0.0.1");
+        auditLog.record(AuditEventType.LOGIN_SUCCESS, "userId", "10.0.0.1");
+        doThrow(new IllegalStateException("unmappable")).doReturn(null).when(auditEventRepository).insert(anyListOf(AuditEvent.class));
+
+        // When
+        final int first = auditLog.write();
+        final int second = auditLog.write();
+
+        // Then
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isEqualTo(1);
+        assertThat(auditLog.getDroppedCount()).isEqualTo(1);
+        verify(auditEventRepository, times(2)).insert(anyListOf(AuditEvent.class));
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.audit;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class AuditRingBufferTest {
+
+    @Test
+    public void constructor_whenCapacityIsNotAPowerOfTwo_shouldThrowException() {
+        // When
+        final Throwable thrown = catchThrowable(() -> new AuditRingBuffer<String>(100));
+
+        // Then
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void offer_whenBufferIsFull_shouldRejectElement() {
+        // Given
+        final AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(4);
+        IntStream.range(0, 4).forEach(buffer::offer);
+
+        // When
+        final boolean offered = buffer.offer(4);
+
+        // Then
+        assertThat(offered).isFalse();
+        assertThat(buffer.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void drainTo_whenElementsWereOffered_shouldReturnThemInOrderAndFreeSlots() {
+        // Given
+        final AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(4);
+        IntStream.range(0, 4).forEach(buffer::offer);
+        final List<Integer> drained = new ArrayList<>();
+
+        // When
+        final int count = buffer.drainTo(drained, 3);
+
+        // Then
+        assertThat(count).isEqualTo(3);
+        assertThat(drained).containsExactly(0, 1, 2);
+        assertThat(buffer.offer(4)).isTrue();
+        assertThat(buffer.drainTo(drained, 10)).isEqualTo(2);
+        assertThat(drained).containsExactly(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    public void offer_whenManyProducersRace_shouldDeliverEveryAcceptedElementOnce() throws Exception {
+        // Given
+        final int producers = 8;
+        final int perProducer = 10000;
+        final AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(1024);
+        final ExecutorService executor = Executors.newFixedThreadPool(producers);
+        final CountDownLatch done = new CountDownLatch(producers);
+        final List<Integer> drained = new ArrayList<>();
+
+        // When
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            executor.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(producer * perProducer + i)) {
+                        Thread.yield();
+                    }
+                }
+                done.countDown();
+            });
+        }
+        while (done.getCount() > 0 || buffer.size() > 0) {
+            buffer.drainTo(drained, 256);
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(drained).hasSize(producers * perProducer);
+        assertThat(drained.stream().distinct().count()).isEqualTo(producers * perProducer);
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            final List<Integer> ordered = drained.stream()
+                    .filter(value -> value / perProducer == producer)
+                    .collect(Collectors.toList());
+            assertThat(ordered).isSorted();
+        }
+    }
+
+}
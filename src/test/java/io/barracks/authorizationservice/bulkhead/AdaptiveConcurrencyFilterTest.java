@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.bulkhead;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveConcurrencyFilterTest {
+
+    private AdaptiveConcurrencyFilter filter;
+
+    @Before
+    public void setUp() {
+        filter = new AdaptiveConcurrencyFilter(new GradientLimit(4, 1, 10, 0.2, 100L, 600, 5000L), 0.75, 0.5, 2);
+    }
+
+    @Test
+    public void priorityFor_shouldFavorDevicesOverAccountFlows() {
+        assertThat(filter.priorityFor(request("/device/authenticate"))).isEqualTo(AdaptiveConcurrencyFilter.Priority.CRITICAL);
+        assertThat(filter.priorityFor(request("/login"))).isEqualTo(AdaptiveConcurrencyFilter.Priority.NORMAL);
+        assertThat(filter.priorityFor(request("/tokens"))).isEqualTo(AdaptiveConcurrencyFilter.Priority.NORMAL);
+        assertThat(filter.priorityFor(request("/register"))).isEqualTo(AdaptiveConcurrencyFilter.Priority.SHEDDABLE);
+        assertThat(filter.priorityFor(request("/password/reset"))).isEqualTo(AdaptiveConcurrencyFilter.Priority.SHEDDABLE);
+        assertThat(filter.priorityFor(request("/health"))).isNull();
+    }
+
+    @Test
+    public void doFilter_whenHalfOfLimitIsInFlight_shouldShedSheddableRequestsButAdmitDevices() throws Exception {
+        // Given
+        final MockHttpServletResponse registration = new MockHttpServletResponse();
+        final MockHttpServletResponse passwordReset = new MockHttpServletResponse();
+        final MockHttpServletResponse device = new MockHttpServletResponse();
+        final FilterChain nested = (request, response) -> filter.doFilter(request("/device/authenticate"), new MockHttpServletResponse(), (req, res) -> {
+            filter.doFilter(request("/register"), registration, new MockFilterChain());
+            filter.doFilter(request("/password/reset"), passwordReset, new MockFilterChain());
+            filter.doFilter(request("/device/authenticate"), device, new MockFilterChain());
+        });
+
+        // When
+        filter.doFilter(request("/device/authenticate"), new MockHttpServletResponse(), nested);
+
+        // Then
+        assertThat(registration.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(registration.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(passwordReset.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(device.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(metrics())
+                .containsEntry("concurrency.limit", 4)
+                .containsEntry("concurrency.in_flight", 0)
+                .containsEntry("concurrency.shed.sheddable", 2L)
+                .containsEntry("concurrency.shed.critical", 0L);
+    }
+
+    @Test
+    public void doFilter_whenLimitIsReached_shouldShedDevicesToo() throws Exception {
+        // Given
+        final MockHttpServletResponse rejected = new MockHttpServletResponse();
+        final FilterChain saturate = (request, response) -> filter.doFilter(request("/device/authenticate"), new MockHttpServletResponse(),
+                (req1, res1) -> filter.doFilter(request("/device/authenticate"), new MockHttpServletResponse(),
+                        (req2, res2) -> filter.doFilter(request("/device/authenticate"), new MockHttpServletResponse(),
+                                (req3, res3) -> filter.doFilter(request("/device/authenticate"), rejected, new MockFilterChain()))));
+
+        // When
+        filter.doFilter(request("/device/authenticate"), new MockHttpServletResponse(), saturate);
+
+        // Then
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(metrics()).containsEntry("concurrency.shed.critical", 1L);
+    }
+
+    private MockHttpServletRequest request(String path) {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        return request;
+    }
+
+    private Map<String, Object> metrics() {
+        return filter.metrics().stream().collect(Collectors.toMap(Metric::getName, Metric::getValue));
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.bulkhead;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkheadFilterTest {
+
+    private BulkheadFilter filter;
+
+    @Before
+    public void setUp() {
+        filter = new BulkheadFilter(0L, 2, 0, 1, 0, 1, 0, 1, 0, 1);
+    }
+
+    @Test
+    public void bulkheadFor_shouldRouteEachEndpointToItsGroup() {
+        assertThat(filter.bulkheadFor(request("/device/authenticate")).getName()).isEqualTo("device");
+        assertThat(filter.bulkheadFor(request("/login")).getName()).isEqualTo("login");
+        assertThat(filter.bulkheadFor(request("/register")).getName()).isEqualTo("account");
+        assertThat(filter.bulkheadFor(request("/password/reset")).getName()).isEqualTo("account");
+        assertThat(filter.bulkheadFor(request("/tokens/revoke")).getName()).isEqualTo("management");
+        assertThat(filter.bulkheadFor(request("/users/123")).getName()).isEqualTo("management");
+        assertThat(filter.bulkheadFor(request("/me")).getName()).isEqualTo("management");
+        assertThat(filter.bulkheadFor(request("/docs/index.html"))).isNull();
+    }
+
+    @Test
+    public void doFilter_whenGroupIsSaturated_shouldRejectOnlyThatGroup() throws Exception {
+        // Given
+        final AtomicInteger deviceCalls = new AtomicInteger();
+        final MockHttpServletResponse loginRejection = new MockHttpServletResponse();
+        final MockHttpServletResponse deviceResponse = new MockHttpServletResponse();
+        final FilterChain slowLogin = (request, response) -> {
+            filter.doFilter(request("/login"), loginRejection, new MockFilterChain());
+            filter.doFilter(request("/device/authenticate"), deviceResponse, (req, res) -> deviceCalls.incrementAndGet());
+        };
+
+        // When
+        filter.doFilter(request("/login"), new MockHttpServletResponse(), slowLogin);
+
+        // Then
+        assertThat(loginRejection.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(loginRejection.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(deviceResponse.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(deviceCalls.get()).isEqualTo(1);
+        assertThat(metrics())
+                .containsEntry("bulkhead.login.rejected", 1L)
+                .containsEntry("bulkhead.login.active", 0)
+                .containsEntry("bulkhead.device.rejected", 0L);
+    }
+
+    @Test
+    public void doFilter_whenRequestIsAsync_shouldHoldPermitUntilCompletion() throws Exception {
+        // Given
+        final MockHttpServletRequest asyncLogin = request("/login");
+        asyncLogin.setAsyncSupported(true);
+        final MockHttpServletResponse rejection = new MockHttpServletResponse();
+        filter.doFilter(asyncLogin, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+
+        // When
+        filter.doFilter(request("/login"), rejection, new MockFilterChain());
+        asyncLogin.getAsyncContext().complete();
+
+        // Then
+        assertThat(rejection.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(metrics())
+                .containsEntry("bulkhead.login.rejected", 1L)
+                .containsEntry("bulkhead.login.active", 0);
+    }
+
+    private MockHttpServletRequest request(String path) {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        return request;
+    }
+
+    private Map<String, Object> metrics() {
+        return filter.metrics().stream().collect(Collectors.toMap(Metric::getName, Metric::getValue));
+    }
+
+}
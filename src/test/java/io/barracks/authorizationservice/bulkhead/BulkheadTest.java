@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.bulkhead;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkheadTest {
+
+    @Test
+    public void tryAcquire_whenPermitsAreAvailable_shouldAcquireImmediately() throws Exception {
+        // Given
+        final Bulkhead bulkhead = new Bulkhead("test", 2, 0, 0L);
+
+        // When
+        final boolean first = bulkhead.tryAcquire();
+        final boolean second = bulkhead.tryAcquire();
+
+        // Then
+        assertThat(first).isTrue();
+        assertThat(second).isTrue();
+        assertThat(bulkhead.getActiveCalls()).isEqualTo(2);
+    }
+
+    @Test
+    public void tryAcquire_whenQueueIsFull_shouldRejectWithoutWaiting() throws Exception {
+        // Given
+        final Bulkhead bulkhead = new Bulkhead("test", 1, 0, 10000L);
+        bulkhead.tryAcquire();
+
+        // When
+        final long start = System.nanoTime();
+        final boolean acquired = bulkhead.tryAcquire();
+
+        // Then
+        assertThat(acquired).isFalse();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000L);
+        assertThat(bulkhead.getRejectedCalls()).isEqualTo(1);
+    }
+
+    @Test
+    public void tryAcquire_whenNoPermitIsReleasedInTime_shouldTimeOut() throws Exception {
+        // Given
+        final Bulkhead bulkhead = new Bulkhead("test", 1, 1, 10L);
+        bulkhead.tryAcquire();
+
+        // When
+        final boolean acquired = bulkhead.tryAcquire();
+
+        // Then
+        assertThat(acquired).isFalse();
+        assertThat(bulkhead.getTimedOutCalls()).isEqualTo(1);
+        assertThat(bulkhead.getQueuedCalls()).isEqualTo(0);
+    }
+
+    @Test
+    public void tryAcquire_whenPermitIsReleasedWhileQueued_shouldAcquireIt() throws Exception {
+        // Given
+        final Bulkhead bulkhead = new Bulkhead("test", 1, 1, 10000L);
+        bulkhead.tryAcquire();
+        final CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> {
+            try {
+                return bulkhead.tryAcquire();
+            } catch (InterruptedException e) {
+                return false;
+            }
+        });
+        while (bulkhead.getQueuedCalls() == 0) {
+            Thread.yield();
+        }
+
+        // When
+        bulkhead.release();
+
+        // Then
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(bulkhead.getActiveCalls()).isEqualTo(1);
+    }
+
+}
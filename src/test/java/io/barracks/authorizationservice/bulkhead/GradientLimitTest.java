@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.bulkhead;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GradientLimitTest {
+
+    private static final long WINDOW_MILLIS = 100L;
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long IDLE_MILLIS = 1000L;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void onSample_whenLatencyIsStableAndLimitIsUsed_shouldGrowLimit() {
+        // Given
+        final GradientLimit limit = new GradientLimit(20, 10, 100, 0.5, WINDOW_MILLIS, 1000, IDLE_MILLIS, clock::get);
+
+        // When
+        runWindows(limit, 10, RTT, 20);
+
+        // Then
+        assertThat(limit.getLimit()).isGreaterThan(20);
+    }
+
+    @Test
+    public void onSample_whenLimitIsNotUsed_shouldNotGrowLimit() {
+        // Given
+        final GradientLimit limit = new GradientLimit(20, 10, 100, 0.5, WINDOW_MILLIS, 1000, IDLE_MILLIS, clock::get);
+
+        // When
+        runWindows(limit, 10, RTT, 5);
+
+        // Then
+        assertThat(limit.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    public void onSample_whenLatencyDegrades_shouldShrinkLimit() {
+        // Given
+        final GradientLimit limit = new GradientLimit(50, 10, 100, 0.5, WINDOW_MILLIS, 1000, IDLE_MILLIS, clock::get);
+        runWindows(limit, 2, RTT, 50);
+        final int before = limit.getLimit();
+
+        // When
+        runWindows(limit, 5, RTT * 4, 50);
+
+        // Then
+        assertThat(limit.getLimit()).isLessThan(before);
+        assertThat(limit.getMinRttNanos()).isEqualTo(RTT);
+    }
+
+    @Test
+    public void onSample_whenLatencyStaysDegraded_shouldNeverGoBelowMinimum() {
+        // Given
+        final GradientLimit limit = new GradientLimit(50, 10, 100, 1.0, WINDOW_MILLIS, 1000, IDLE_MILLIS, clock::get);
+        runWindows(limit, 1, RTT, 50);
+
+        // When
+        runWindows(limit, 50, RTT * 10, 50);
+
+        // Then
+        assertThat(limit.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    public void onSample_whenMinRttIsReset_shouldAcceptNewBaseline() {
+        // Given
+        final GradientLimit limit = new GradientLimit(50, 10, 100, 0.5, WINDOW_MILLIS, 5, IDLE_MILLIS, clock::get);
+        runWindows(limit, 1, RTT, 50);
+
+        // When
+        runWindows(limit, 5, RTT * 3, 50);
+
+        // Then
+        assertThat(limit.getMinRttNanos()).isEqualTo(RTT * 3);
+    }
+
+    @Test
+    public void tick_whenNoSampleArrivesForIdlePeriod_shouldRecoverTowardMaximum() {
+        // Given
+        final GradientLimit limit = new GradientLimit(50, 10, 100, 0.5, WINDOW_MILLIS, 1000, IDLE_MILLIS, clock::get);
+        runWindows(limit, 5, RTT * 4, 50);
+        final int degraded = limit.getLimit();
+
+        // When
+        for (long elapsed = 0; elapsed <= 2 * IDLE_MILLIS; elapsed += WINDOW_MILLIS) {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS));
+            limit.tick();
+        }
+
+        // Then
+        assertThat(limit.getLimit()).isGreaterThan(degraded).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    public void tick_whenSamplesStoppedRecently_shouldKeepLimit() {
+        // Given
+        final GradientLimit limit = new GradientLimit(50, 10, 100, 0.5, WINDOW_MILLIS, 1000, IDLE_MILLIS, clock::get);
+        runWindows(limit, 2, RTT, 10);
+        final int before = limit.getLimit();
+
+        // When
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS));
+        limit.tick();
+
+        // Then
+        assertThat(limit.getLimit()).isEqualTo(before);
+    }
+
+    private void runWindows(GradientLimit limit, int windows, long rtt, int inFlight) {
+        for (int window = 0; window < windows; window++) {
+            for (int i = 0; i < 10; i++) {
+                limit.onSample(rtt, inFlight);
+            }
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS));
+            limit.onSample(rtt, inFlight);
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.cache;
+
+import io.barracks.authorizationservice.model.CacheInvalidation;
+import io.barracks.authorizationservice.model.CacheInvalidationType;
+import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.User;
+import io.barracks.authorizationservice.repository.TokenRepository;
+import io.barracks.authorizationservice.repository.UserRepository;
+import io.barracks.authorizationservice.utils.UserUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AuthenticationCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TokenRepository tokenRepository;
+
+    @Mock
+    private CacheInvalidationBus invalidationBus;
+
+    private FaultInjectingRepository<UserRepository> faultyUsers;
+    private FaultInjectingRepository<TokenRepository> faultyTokens;
+    private AuthenticationCache authenticationCache;
+
+    @Before
+    public void setUp() {
+        faultyUsers = new FaultInjectingRepository<>(UserRepository.class, userRepository);
+        faultyTokens = new FaultInjectingRepository<>(TokenRepository.class, tokenRepository);
+    }
+
+    @After
+    public void tearDown() {
+        faultyUsers.recover();
+        faultyTokens.recover();
+        authenticationCache.stop();
+    }
+
+    @Test
+    public void getUserByApiKey_whenMongoStepsDown_shouldServeLastKnownUser() {
+        // Given
+        authenticationCache = new AuthenticationCache(faultyUsers.getProxy(), faultyTokens.getProxy(), invalidationBus, 0L, 0L, 60000L, 100, 1);
+        final User user = UserUtils.getUser();
+        when(userRepository.findByApiKey(user.getApiKey())).thenReturn(Optional.of(user));
+        authenticationCache.getUserByApiKey(user.getApiKey());
+        faultyUsers.fail();
+
+        // When
+        final Optional<User> result = authenticationCache.getUserByApiKey(user.getApiKey());
+
+        // Then
+        assertThat(result).contains(user);
+        assertThat(faultyUsers.getCalls()).isEqualTo(2);
+        assertThat(metrics()).containsEntry("auth_cache.users_by_api_key.stale_on_error", 1L);
+    }
+
+    @Test
+    public void getUserByApiKey_whenMongoStepsDownBeforeFirstLoad_shouldPropagateFailure() {
+        // Given
+        authenticationCache = new AuthenticationCache(faultyUsers.getProxy(), faultyTokens.getProxy(), invalidationBus, 0L, 0L, 60000L, 100, 1);
+        faultyUsers.fail();
+
+        // When / Then
+        assertThatExceptionOfType(DataAccessResourceFailureException.class)
+                .isThrownBy(() -> authenticationCache.getUserByApiKey("apiKey"));
+    }
+
+    @Test
+    public void getTokenByValue_whenMongoStalls_shouldAnswerFromStaleEntryWithoutWaiting() throws Exception {
+        // Given
+        authenticationCache = new AuthenticationCache(faultyUsers.getProxy(), faultyTokens.getProxy(), invalidationBus, 0L, 60000L, 60000L, 100, 1);
+        final Token token = Token.builder().id(UUID.randomUUID().toString()).userId("userId").value("value").build();
+        when(tokenRepository.findByValue(token.getValue())).thenReturn(Optional.of(token));
+        authenticationCache.getTokenByValue(token.getValue());
+        final CountDownLatch stall = faultyTokens.stall();
+
+        // When
+        final Optional<Token> result = CompletableFuture
+                .supplyAsync(() -> authenticationCache.getTokenByValue(token.getValue()))
+                .get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(result).contains(token);
+        assertThat(stall.getCount()).isEqualTo(1);
+        assertThat(metrics()).containsEntry("auth_cache.tokens_by_value.stale_hits", 1L);
+    }
+
+    @Test
+    public void invalidateTokensOfUser_shouldForceRevokedTokensToBeReloaded() {
+        // Given
+        authenticationCache = new AuthenticationCache(faultyUsers.getProxy(), faultyTokens.getProxy(), invalidationBus, 60000L, 0L, 0L, 100, 1);
+        final Token token = Token.builder().id(UUID.randomUUID().toString()).userId("userId").value("value").build();
+        when(tokenRepository.findByValue(token.getValue())).thenReturn(Optional.of(token));
+        authenticationCache.getTokenByValue(token.getValue());
+        when(tokenRepository.findByValue(token.getValue())).thenReturn(Optional.of(token.toBuilder().revoked(true).build()));
+
+        // When
+        authenticationCache.invalidateTokensOfUser(token.getUserId());
+        final Optional<Token> result = authenticationCache.getTokenByValue(token.getValue());
+
+        // Then
+        assertThat(result.map(Token::isRevoked)).contains(true);
+        assertThat(faultyTokens.getCalls()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidateUser_shouldDropEntriesCachedByEmailAndApiKey() {
+        // Given
+        authenticationCache = new AuthenticationCache(faultyUsers.getProxy(), faultyTokens.getProxy(), invalidationBus, 60000L, 0L, 0L, 100, 1);
+        final User user = UserUtils.getUser();
+        when(userRepository.findByApiKey(user.getApiKey())).thenReturn(Optional.of(user));
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        authenticationCache.getUserByApiKey(user.getApiKey());
+        authenticationCache.getUserByEmail(user.getEmail());
+
+        // When
+        authenticationCache.invalidateUser(user.getEmail());
+        authenticationCache.getUserByApiKey(user.getApiKey());
+        authenticationCache.getUserByEmail(user.getEmail());
+
+        // Then
+        assertThat(faultyUsers.getCalls()).isEqualTo(4);
+    }
+
+    @Test
+    public void invalidateToken_shouldPublishTokenIdToOtherInstances() {
+        // Given
+        authenticationCache = new AuthenticationCache(faultyUsers.getProxy(), faultyTokens.getProxy(), invalidationBus, 60000L, 0L, 0L, 100, 1);
+        final Token token = Token.builder().id(UUID.randomUUID().toString()).userId("userId").value("value").build();
+
+        // When
+        authenticationCache.invalidateToken(token);
+
+        // Then
+        verify(invalidationBus).publish(CacheInvalidationType.TOKEN, token.getId());
+    }
+
+    @Test
+    public void apply_whenTokenIsRevokedOnAnotherInstance_shouldForceItToBeReloaded() {
+        // Given
+        authenticationCache = new AuthenticationCache(faultyUsers.getProxy(), faultyTokens.getProxy(), invalidationBus, 60000L, 0L, 0L, 100, 1);
+        final Token token = Token.builder().id(UUID.randomUUID().toString()).userId("userId").value("value").build();
+        when(tokenRepository.findByValue(token.getValue())).thenReturn(Optional.of(token));
+        authenticationCache.getTokenByValue(token.getValue());
+        when(tokenRepository.findByValue(token.getValue())).thenReturn(Optional.of(token.toBuilder().revoked(true).build()));
+
+        // When
+        authenticationCache.apply(CacheInvalidation.builder().type(CacheInvalidationType.TOKEN).key(token.getId()).build());
+        final Optional<Token> result = authenticationCache.getTokenByValue(token.getValue());
+
+        // Then
+        assertThat(result.map(Token::isRevoked)).contains(true);
+        verify(invalidationBus, never()).publish(any(), any());
+    }
+
+    @Test
+    public void snapshot_shouldListIdsOfCachedUsersAndTokensWithoutCredentials() {
+        // Given
+        authenticationCache = new AuthenticationCache(faultyUsers.getProxy(), faultyTokens.getProxy(), invalidationBus, 60000L, 0L, 60000L, 100, 1);
+        final User user = UserUtils.getUser();
+        final Token token = Token.builder().id(UUID.randomUUID().toString()).userId(user.getId()).value("value").build();
+        when(userRepository.findByApiKey(user.getApiKey())).thenReturn(Optional.of(user));
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        authenticationCache.getUserByApiKey(user.getApiKey());
+        authenticationCache.getUserByEmail(user.getEmail());
+        authenticationCache.preloadToken(token);
+
+        // When
+        final HotKeySnapshot snapshot = authenticationCache.snapshot();
+
+        // Then
+        assertThat(snapshot.getUserIds()).containsExactly(user.getId());
+        assertThat(snapshot.getTokenIds()).containsExactly(token.getId());
+    }
+
+    private Map<String, Number> metrics() {
+        return authenticationCache.metrics().stream().collect(Collectors.toMap(Metric::getName, Metric::getValue));
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.cache;
+
+import io.barracks.authorizationservice.model.CacheInvalidation;
+import io.barracks.authorizationservice.model.CacheInvalidationType;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CacheInvalidationBusTest {
+
+    private static final String COLLECTION = "cacheInvalidations";
+
+    @Mock
+    private MongoOperations mongoOperations;
+
+    private CacheInvalidationBus bus;
+    private final List<CacheInvalidation> received = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        doReturn(COLLECTION).when(mongoOperations).getCollectionName(CacheInvalidation.class);
+        bus = new CacheInvalidationBus(mongoOperations, true, 1000L);
+        bus.subscribe(received::add);
+    }
+
+    @Test
+    public void publish_whenCollectionIsMissing_shouldCreateItCappedBeforeInserting() {
+        // Given
+        doReturn(false).when(mongoOperations).collectionExists(COLLECTION);
+        final ArgumentCaptor<CollectionOptions> options = ArgumentCaptor.forClass(CollectionOptions.class);
+        final ArgumentCaptor<CacheInvalidation> invalidation = ArgumentCaptor.forClass(CacheInvalidation.class);
+
+        // When
+        bus.publish(CacheInvalidationType.TOKEN, "tokenId");
+
+        // Then
+        verify(mongoOperations).createCollection(eq(COLLECTION), options.capture());
+        verify(mongoOperations).insert(invalidation.capture());
+        assertThat(options.getValue().getCapped()).isTrue();
+        assertThat(invalidation.getValue().getType()).isEqualTo(CacheInvalidationType.TOKEN);
+        assertThat(invalidation.getValue().getKey()).isEqualTo("tokenId");
+        assertThat(invalidation.getValue().getOrigin()).isNotNull();
+    }
+
+    @Test
+    public void publish_whenMongoFails_shouldNotFailTheCaller() {
+        // Given
+        doReturn(true).when(mongoOperations).collectionExists(COLLECTION);
+        doThrow(new DataAccessResourceFailureException("down")).when(mongoOperations).insert(any(CacheInvalidation.class));
+
+        // When
+        bus.publish(CacheInvalidationType.USER, "user@barracks.io");
+
+        // Then
+        verify(mongoOperations).insert(any(CacheInvalidation.class));
+    }
+
+    @Test
+    public void publish_whenDisabled_shouldNotTouchMongo() {
+        // Given
+        bus = new CacheInvalidationBus(mongoOperations, false, 1000L);
+
+        // When
+        bus.publish(CacheInvalidationType.USER, "user@barracks.io");
+
+        // Then
+        verify(mongoOperations, never()).insert(any(CacheInvalidation.class));
+    }
+
+    @Test
+    public void dispatch_shouldApplyInvalidationsOfOtherInstancesOnly() {
+        // Given
+        doReturn(true).when(mongoOperations).collectionExists(COLLECTION);
+        final ArgumentCaptor<CacheInvalidation> own = ArgumentCaptor.forClass(CacheInvalidation.class);
+        bus.publish(CacheInvalidationType.TOKENS_OF_USER, "userId");
+        verify(mongoOperations).insert(own.capture());
+        final CacheInvalidation other = own.getValue().toBuilder().origin("another-instance").build();
+
+        // When
+        bus.dispatch(own.getValue());
+        bus.dispatch(other);
+
+        // Then
+        assertThat(received).containsExactly(other);
+    }
+}
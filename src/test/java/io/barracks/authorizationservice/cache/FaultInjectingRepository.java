@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.cache;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stands in front of a repository and simulates an unhealthy Mongo: calls either fail as a lost primary would, or
+ * stall until released.
+ */
+class FaultInjectingRepository<T> implements InvocationHandler {
+
+    private final T delegate;
+    private final T proxy;
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile boolean failing;
+    private volatile CountDownLatch stall;
+
+    @SuppressWarnings("unchecked")
+    FaultInjectingRepository(Class<T> repositoryInterface, T delegate) {
+        this.delegate = delegate;
+        this.proxy = (T) Proxy.newProxyInstance(repositoryInterface.getClassLoader(), new Class<?>[]{repositoryInterface}, this);
+    }
+
+    T getProxy() {
+        return proxy;
+    }
+
+    void fail() {
+        failing = true;
+    }
+
+    CountDownLatch stall() {
+        stall = new CountDownLatch(1);
+        return stall;
+    }
+
+    void recover() {
+        failing = false;
+        final CountDownLatch current = stall;
+        stall = null;
+        if (current != null) {
+            current.countDown();
+        }
+    }
+
+    int getCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+        calls.incrementAndGet();
+        final CountDownLatch current = stall;
+        if (current != null) {
+            current.await();
+        }
+        if (failing) {
+            throw new DataAccessResourceFailureException("Injected failure on " + method.getName());
+        }
+        try {
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+}
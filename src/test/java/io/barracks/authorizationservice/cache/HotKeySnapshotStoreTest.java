@@ -0,0 +1,171 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.cache;
+
+import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.User;
+import io.barracks.authorizationservice.repository.TokenRepository;
+import io.barracks.authorizationservice.repository.UserRepository;
+import io.barracks.authorizationservice.utils.UserUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HotKeySnapshotStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private AuthenticationCache authenticationCache;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TokenRepository tokenRepository;
+
+    @Test
+    public void restore_whenSnapshotWasSavedOnShutdown_shouldPreloadUsersAndLiveTokens() throws Exception {
+        // Given
+        final Path path = folder.getRoot().toPath().resolve("hot-keys.snapshot");
+        final User user = UserUtils.getUser();
+        final Token token = Token.builder().id(UUID.randomUUID().toString()).userId(user.getId()).value("value").build();
+        final Token revoked = Token.builder().id(UUID.randomUUID().toString()).userId(user.getId()).value("revoked").revoked(true).build();
+        final HotKeySnapshot snapshot = new HotKeySnapshot(
+                System.currentTimeMillis(),
+                Collections.singletonList(user.getId()),
+                Arrays.asList(token.getId(), revoked.getId())
+        );
+        when(authenticationCache.snapshot()).thenReturn(snapshot);
+        when(userRepository.findAll(snapshot.getUserIds())).thenReturn(Collections.singletonList(user));
+        when(tokenRepository.findAll(snapshot.getTokenIds())).thenReturn(Arrays.asList(token, revoked));
+        final HotKeySnapshotStore store = new HotKeySnapshotStore(authenticationCache, userRepository, tokenRepository, path.toString(), TimeUnit.DAYS.toMillis(1));
+        store.save();
+
+        // When
+        final String result = store.restore();
+
+        // Then
+        assertThat(HotKeySnapshot.readFrom(path)).isEqualTo(snapshot);
+        assertThat(new String(Files.readAllBytes(path), "UTF-8")).doesNotContain("value");
+        assertThat(result).isEqualTo("1 users, 1 tokens");
+        verify(authenticationCache).preloadUser(user);
+        verify(authenticationCache).preloadToken(token);
+        verify(authenticationCache, never()).preloadToken(revoked);
+    }
+
+    @Test
+    public void restore_whenSnapshotIsTooOld_shouldNotLoadAnything() throws Exception {
+        // Given
+        final Path path = folder.getRoot().toPath().resolve("hot-keys.snapshot");
+        new HotKeySnapshot(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2), Collections.singletonList("user"), Collections.emptyList())
+                .writeTo(path);
+        final HotKeySnapshotStore store = new HotKeySnapshotStore(authenticationCache, userRepository, tokenRepository, path.toString(), TimeUnit.DAYS.toMillis(1));
+
+        // When
+        final String result = store.restore();
+
+        // Then
+        assertThat(result).isEqualTo("snapshot too old");
+        verifyZeroInteractions(userRepository, tokenRepository, authenticationCache);
+    }
+
+    @Test
+    public void restore_whenFileIsNotASnapshot_shouldThrowIOException() throws Exception {
+        // Given
+        final Path path = folder.newFile("hot-keys.snapshot").toPath();
+        Files.write(path, new byte[]{1, 2, 3, 4, 5, 6});
+        final HotKeySnapshotStore store = new HotKeySnapshotStore(authenticationCache, userRepository, tokenRepository, path.toString(), TimeUnit.DAYS.toMillis(1));
+
+        // When / Then
+        assertThatExceptionOfType(IOException.class).isThrownBy(store::restore);
+        assertThat(path).doesNotExist();
+        verify(authenticationCache, never()).preloadUser(any(User.class));
+    }
+
+    @Test
+    public void restore_whenIdLengthIsCorrupt_shouldDiscardSnapshot() throws Exception {
+        // Given
+        final Path path = folder.getRoot().toPath().resolve("hot-keys.snapshot");
+        new HotKeySnapshot(System.currentTimeMillis(), Collections.singletonList("user"), Collections.emptyList()).writeTo(path);
+        final byte[] bytes = Files.readAllBytes(path);
+        // Length prefix of the first user id, after the magic number, the creation date and the user id count
+        bytes[Integer.BYTES + Long.BYTES + Integer.BYTES] = (byte) 0xFF;
+        Files.write(path, bytes);
+        final HotKeySnapshotStore store = new HotKeySnapshotStore(authenticationCache, userRepository, tokenRepository, path.toString(), TimeUnit.DAYS.toMillis(1));
+
+        // When / Then
+        assertThatExceptionOfType(IOException.class).isThrownBy(store::restore);
+        assertThat(path).doesNotExist();
+        verifyZeroInteractions(userRepository, tokenRepository);
+    }
+
+    @Test
+    public void save_whenDataDirectoryDoesNotExist_shouldCreateIt() throws Exception {
+        // Given
+        final Path path = folder.getRoot().toPath().resolve("data").resolve("hot-keys.snapshot");
+        final HotKeySnapshot snapshot = new HotKeySnapshot(System.currentTimeMillis(), Collections.singletonList("user"), Collections.emptyList());
+        when(authenticationCache.snapshot()).thenReturn(snapshot);
+        final HotKeySnapshotStore store = new HotKeySnapshotStore(authenticationCache, userRepository, tokenRepository, path.toString(), TimeUnit.DAYS.toMillis(1));
+
+        // When
+        store.save();
+
+        // Then
+        assertThat(HotKeySnapshot.readFrom(path)).isEqualTo(snapshot);
+    }
+
+    @Test
+    public void restore_whenDisabled_shouldNotTouchTheFileSystem() throws Exception {
+        // Given
+        final HotKeySnapshotStore store = new HotKeySnapshotStore(authenticationCache, userRepository, tokenRepository, "", TimeUnit.DAYS.toMillis(1));
+
+        // When
+        store.save();
+        final String result = store.restore();
+
+        // Then
+        assertThat(result).isEqualTo("disabled");
+        verifyZeroInteractions(authenticationCache);
+    }
+
+}
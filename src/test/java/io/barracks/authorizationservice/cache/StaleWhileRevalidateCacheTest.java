@@ -0,0 +1,393 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class StaleWhileRevalidateCacheTest {
+
+    private static final long FRESH_MILLIS = 1000L;
+    private static final long STALE_WHILE_REVALIDATE_MILLIS = 2000L;
+    private static final long STALE_IF_ERROR_MILLIS = 10000L;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, String> database = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final List<Runnable> refreshes = new ArrayList<>();
+    private volatile boolean databaseDown;
+    private volatile boolean loaderBroken;
+    private StaleWhileRevalidateCache<String, String> cache;
+
+    @Before
+    public void setUp() {
+        cache = new StaleWhileRevalidateCache<>(
+                "test",
+                key -> {
+                    loads.incrementAndGet();
+                    if (databaseDown) {
+                        throw new DataAccessResourceFailureException("down");
+                    }
+                    if (loaderBroken) {
+                        throw new IllegalStateException("broken");
+                    }
+                    return Optional.ofNullable(database.get(key));
+                },
+                refreshes::add,
+                clock::get,
+                FRESH_MILLIS, STALE_WHILE_REVALIDATE_MILLIS, STALE_IF_ERROR_MILLIS, 2
+        );
+        database.put("key", "v1");
+    }
+
+    @Test
+    public void get_whenEntryIsFresh_shouldNotLoadAgain() {
+        // Given
+        cache.get("key");
+        database.put("key", "v2");
+        clock.addAndGet(FRESH_MILLIS - 1);
+
+        // When
+        final Optional<String> result = cache.get("key");
+
+        // Then
+        assertThat(result).contains("v1");
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(metrics()).containsEntry("auth_cache.test.hits", 1L).containsEntry("auth_cache.test.misses", 1L);
+    }
+
+    @Test
+    public void get_whenEntryIsStale_shouldServeItAndRefreshOnceInBackground() {
+        // Given
+        cache.get("key");
+        database.put("key", "v2");
+        clock.addAndGet(FRESH_MILLIS);
+
+        // When
+        final Optional<String> first = cache.get("key");
+        final Optional<String> second = cache.get("key");
+
+        // Then
+        assertThat(first).contains("v1");
+        assertThat(second).contains("v1");
+        assertThat(refreshes).hasSize(1);
+        refreshes.get(0).run();
+        assertThat(cache.get("key")).contains("v2");
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(metrics()).containsEntry("auth_cache.test.stale_hits", 2L).containsEntry("auth_cache.test.refreshes", 1L);
+    }
+
+    @Test
+    public void get_whenBackgroundRefreshFails_shouldKeepServingStaleAndRetry() {
+        // Given
+        cache.get("key");
+        clock.addAndGet(FRESH_MILLIS);
+        cache.get("key");
+        databaseDown = true;
+
+        // When
+        refreshes.get(0).run();
+        final Optional<String> result = cache.get("key");
+
+        // Then
+        assertThat(result).contains("v1");
+        assertThat(refreshes).hasSize(2);
+        assertThat(metrics()).containsEntry("auth_cache.test.refresh_failures", 1L);
+    }
+
+    @Test
+    public void get_whenLoadFailsWithinErrorBudget_shouldServeStale() {
+        // Given
+        cache.get("key");
+        databaseDown = true;
+        clock.addAndGet(FRESH_MILLIS + STALE_IF_ERROR_MILLIS - 1);
+
+        // When
+        final Optional<String> result = cache.get("key");
+
+        // Then
+        assertThat(result).contains("v1");
+        assertThat(metrics()).containsEntry("auth_cache.test.stale_on_error", 1L);
+    }
+
+    @Test
+    public void get_whenLoadFailsBeyondErrorBudget_shouldPropagateFailure() {
+        // Given
+        cache.get("key");
+        databaseDown = true;
+        clock.addAndGet(FRESH_MILLIS + STALE_IF_ERROR_MILLIS);
+
+        // When / Then
+        assertThatExceptionOfType(DataAccessResourceFailureException.class).isThrownBy(() -> cache.get("key"));
+        assertThat(metrics()).containsEntry("auth_cache.test.load_failures", 1L);
+    }
+
+    @Test
+    public void getAsync_whenEntryIsFresh_shouldNotCallAsyncLoader() {
+        // Given
+        cache.get("key");
+        final AtomicInteger asyncLoads = new AtomicInteger();
+
+        // When
+        final CompletableFuture<Optional<String>> result = cache.getAsync("key", key -> {
+            asyncLoads.incrementAndGet();
+            return CompletableFuture.completedFuture(Optional.of("v2"));
+        });
+
+        // Then
+        assertThat(result.join()).contains("v1");
+        assertThat(asyncLoads.get()).isZero();
+    }
+
+    @Test
+    public void getAsync_whenKeyIsMissing_shouldStoreAsyncLoad() {
+        // Given
+        final CompletableFuture<Optional<String>> load = new CompletableFuture<>();
+
+        // When
+        final CompletableFuture<Optional<String>> result = cache.getAsync("key", key -> load);
+        load.complete(Optional.of("v1"));
+
+        // Then
+        assertThat(result.join()).contains("v1");
+        assertThat(cache.get("key")).contains("v1");
+        assertThat(loads.get()).isZero();
+    }
+
+    @Test
+    public void getAsync_whenLoadFailsWithinErrorBudget_shouldServeStale() {
+        // Given
+        cache.get("key");
+        clock.addAndGet(FRESH_MILLIS + STALE_IF_ERROR_MILLIS - 1);
+        final CompletableFuture<Optional<String>> load = new CompletableFuture<>();
+        load.completeExceptionally(new DataAccessResourceFailureException("down"));
+
+        // When
+        final CompletableFuture<Optional<String>> result = cache.getAsync("key", key -> load);
+
+        // Then
+        assertThat(result.join()).contains("v1");
+        assertThat(metrics()).containsEntry("auth_cache.test.stale_on_error", 1L);
+    }
+
+    @Test
+    public void getAsync_whenKeyIsInvalidatedDuringLoad_shouldNotStoreLoad() {
+        // Given
+        final CompletableFuture<Optional<String>> load = new CompletableFuture<>();
+        final CompletableFuture<Optional<String>> result = cache.getAsync("key", key -> load);
+
+        // When
+        cache.invalidate("key");
+        load.complete(Optional.of("v0"));
+
+        // Then
+        assertThat(result.join()).contains("v0");
+        assertThat(cache.get("key")).contains("v1");
+    }
+
+    @Test
+    public void get_whenValueDisappears_shouldDropEntryAndNotCacheAbsence() {
+        // Given
+        cache.get("key");
+        database.remove("key");
+        clock.addAndGet(FRESH_MILLIS + STALE_WHILE_REVALIDATE_MILLIS);
+
+        // When
+        final Optional<String> result = cache.get("key");
+
+        // Then
+        assertThat(result).isEmpty();
+        assertThat(cache.size()).isEqualTo(0);
+        database.put("key", "v2");
+        assertThat(cache.get("key")).contains("v2");
+    }
+
+    @Test
+    public void invalidate_whenRefreshIsInFlight_shouldNotResurrectEntry() {
+        // Given
+        cache.get("key");
+        clock.addAndGet(FRESH_MILLIS);
+        cache.get("key");
+
+        // When
+        cache.invalidate("key");
+        refreshes.get(0).run();
+
+        // Then
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void invalidate_whenLoadOfAnotherKeyIsInFlight_shouldStoreThatLoad() {
+        // Given
+        database.put("other", "w1");
+        cache.get("key");
+        cache.get("other");
+        clock.addAndGet(FRESH_MILLIS);
+        cache.get("other");
+        database.put("other", "w2");
+
+        // When
+        cache.invalidate("key");
+        refreshes.get(0).run();
+
+        // Then
+        assertThat(cache.get("other")).contains("w2");
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidate_whenKeyIsNotCached_shouldDiscardLoadStartedBefore() {
+        // Given
+        cache = new StaleWhileRevalidateCache<>(
+                "test",
+                key -> {
+                    final Optional<String> value = Optional.ofNullable(database.get(key));
+                    cache.invalidate(key);
+                    return value;
+                },
+                refreshes::add, clock::get, FRESH_MILLIS, STALE_WHILE_REVALIDATE_MILLIS, STALE_IF_ERROR_MILLIS, 2
+        );
+
+        // When
+        final Optional<String> result = cache.get("key");
+
+        // Then
+        assertThat(result).contains("v1");
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void get_whenRefreshWasDiscarded_shouldRefreshAgainOnNextStaleHit() {
+        // Given
+        cache.get("key");
+        clock.addAndGet(FRESH_MILLIS);
+        cache.get("key");
+        cache.invalidateIf(value -> false);
+        refreshes.get(0).run();
+
+        // When
+        cache.get("key");
+
+        // Then
+        assertThat(refreshes).hasSize(2);
+    }
+
+    @Test
+    public void get_whenRefreshFailsUnexpectedly_shouldRefreshAgainOnNextStaleHit() {
+        // Given
+        cache.get("key");
+        clock.addAndGet(FRESH_MILLIS);
+        cache.get("key");
+        loaderBroken = true;
+
+        // When
+        refreshes.get(0).run();
+        cache.get("key");
+
+        // Then
+        assertThat(refreshes).hasSize(2);
+        assertThat(metrics()).containsEntry("auth_cache.test.refresh_failures", 1L);
+    }
+
+    @Test
+    public void invalidateIf_shouldRemoveMatchingEntries() {
+        // Given
+        database.put("other", "w1");
+        cache.get("key");
+        cache.get("other");
+
+        // When
+        cache.invalidateIf(value -> value.startsWith("v"));
+
+        // Then
+        assertThat(cache.size()).isEqualTo(1);
+        cache.get("other");
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void get_whenCacheIsFull_shouldEvictLeastRecentlyAccessedEntry() {
+        // Given
+        database.put("a", "1");
+        database.put("b", "2");
+        cache.get("key");
+        clock.addAndGet(FRESH_MILLIS / 2);
+        cache.get("a");
+        clock.addAndGet(FRESH_MILLIS);
+        cache.get("key");
+
+        // When
+        cache.get("b");
+
+        // Then
+        assertThat(cache.values()).containsOnly("v1", "2");
+    }
+
+    @Test
+    public void get_whenCacheIsFull_shouldEvictToStayBounded() {
+        // Given
+        database.put("a", "1");
+        database.put("b", "2");
+        cache.get("key");
+        cache.get("a");
+
+        // When
+        cache.get("b");
+
+        // Then
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(metrics()).containsEntry("auth_cache.test.evictions", 1L);
+    }
+
+    @Test
+    public void put_shouldServePreloadedValueWithoutLoading() {
+        // When
+        cache.put("preloaded", "p1");
+
+        // Then
+        assertThat(cache.get("preloaded")).contains("p1");
+        assertThat(loads.get()).isEqualTo(0);
+    }
+
+    private Map<String, Number> metrics() {
+        return cache.metrics().stream().collect(Collectors.toMap(Metric::getName, Metric::getValue));
+    }
+
+}
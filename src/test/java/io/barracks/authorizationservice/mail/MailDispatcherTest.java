@@ -0,0 +1,193 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.mail;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.barracks.authorizationservice.model.OutboxMail;
+import io.barracks.authorizationservice.model.OutboxMailStatus;
+import io.barracks.authorizationservice.repository.OutboxMailRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.internet.MimeMessage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MailDispatcherTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BACKOFF_MILLIS = 1000L;
+
+    @Mock
+    private OutboxMailRepository outboxMailRepository;
+
+    private GreenMail smtpServer;
+    private MailDispatcher mailDispatcher;
+
+    @Before
+    public void setUp() {
+        smtpServer = new GreenMail(ServerSetupTest.SMTP);
+        smtpServer.start();
+        final JavaMailSenderImpl javaMailSender = new JavaMailSenderImpl();
+        javaMailSender.setHost(ServerSetupTest.SMTP.getBindAddress());
+        javaMailSender.setPort(ServerSetupTest.SMTP.getPort());
+        mailDispatcher = new MailDispatcher(outboxMailRepository, javaMailSender, 10, 5, 10L, 60000L, MAX_ATTEMPTS, BACKOFF_MILLIS);
+        when(outboxMailRepository.claimMails(anyListOf(String.class), any(Date.class), any(Date.class), anyInt()))
+                .thenReturn(Collections.emptyList());
+    }
+
+    @After
+    public void tearDown() {
+        smtpServer.stop();
+    }
+
+    @Test
+    public void dispatch_whenMailIsQueued_shouldSendItAndRemoveItFromOutbox() throws Exception {
+        // Given
+        final OutboxMail mail = getOutboxMail(1);
+        when(outboxMailRepository.claimMails(eq(Collections.singletonList(mail.getId())), any(Date.class), any(Date.class), eq(5)))
+                .thenReturn(Collections.singletonList(mail));
+        mailDispatcher.offer(mail.getId());
+
+        // When
+        mailDispatcher.dispatch();
+
+        // Then
+        assertThat(smtpServer.waitForIncomingEmail(5000L, 1)).isTrue();
+        final MimeMessage[] received = smtpServer.getReceivedMessages();
+        assertThat(received).hasSize(1);
+        assertThat(received[0].getSubject()).isEqualTo(mail.getSubject());
+        verify(outboxMailRepository).delete(mail.getId());
+    }
+
+    @Test
+    public void dispatch_whenMailsAreDue_shouldSendThemInOneBatch() throws Exception {
+        // Given
+        final OutboxMail mail1 = getOutboxMail(2);
+        final OutboxMail mail2 = getOutboxMail(1);
+        when(outboxMailRepository.claimMails(eq(Collections.emptyList()), any(Date.class), any(Date.class), eq(5)))
+                .thenReturn(Arrays.asList(mail1, mail2));
+
+        // When
+        mailDispatcher.dispatch();
+
+        // Then
+        assertThat(smtpServer.waitForIncomingEmail(5000L, 2)).isTrue();
+        assertThat(smtpServer.getReceivedMessages()).hasSize(2);
+        verify(outboxMailRepository).delete(mail1.getId());
+        verify(outboxMailRepository).delete(mail2.getId());
+    }
+
+    @Test
+    public void dispatch_whenSmtpServerDroppedTheConnection_shouldReconnect() throws Exception {
+        // Given
+        final OutboxMail mail1 = getOutboxMail(1);
+        final OutboxMail mail2 = getOutboxMail(1);
+        when(outboxMailRepository.claimMails(anyListOf(String.class), any(Date.class), any(Date.class), anyInt()))
+                .thenReturn(Collections.singletonList(mail1), Collections.singletonList(mail2));
+        mailDispatcher.dispatch();
+        smtpServer.stop();
+        smtpServer = new GreenMail(ServerSetupTest.SMTP);
+        smtpServer.start();
+
+        // When
+        mailDispatcher.dispatch();
+
+        // Then
+        assertThat(smtpServer.waitForIncomingEmail(5000L, 1)).isTrue();
+        final MimeMessage[] received = smtpServer.getReceivedMessages();
+        assertThat(received).hasSize(1);
+        assertThat(received[0].getSubject()).isEqualTo(mail2.getSubject());
+        verify(outboxMailRepository).delete(mail2.getId());
+    }
+
+    @Test
+    public void dispatch_whenSmtpServerIsDown_shouldRescheduleMailWithBackoff() throws Exception {
+        // Given
+        final OutboxMail mail = getOutboxMail(2);
+        when(outboxMailRepository.claimMails(anyListOf(String.class), any(Date.class), any(Date.class), anyInt()))
+                .thenReturn(Collections.singletonList(mail));
+        smtpServer.stop();
+        final long before = System.currentTimeMillis();
+
+        // When
+        mailDispatcher.dispatch();
+
+        // Then
+        final ArgumentCaptor<Date> nextAttempt = ArgumentCaptor.forClass(Date.class);
+        verify(outboxMailRepository).rescheduleMail(eq(mail.getId()), nextAttempt.capture());
+        verify(outboxMailRepository, never()).delete(anyString());
+        assertThat(nextAttempt.getValue().getTime()).isGreaterThanOrEqualTo(before + 2 * BACKOFF_MILLIS);
+    }
+
+    @Test
+    public void dispatch_whenMaxAttemptsAreReached_shouldMarkMailAsFailed() throws Exception {
+        // Given
+        final OutboxMail mail = getOutboxMail(MAX_ATTEMPTS);
+        when(outboxMailRepository.claimMails(anyListOf(String.class), any(Date.class), any(Date.class), anyInt()))
+                .thenReturn(Collections.singletonList(mail));
+        smtpServer.stop();
+
+        // When
+        mailDispatcher.dispatch();
+
+        // Then
+        verify(outboxMailRepository).markMailAsFailed(mail.getId());
+        verify(outboxMailRepository, never()).rescheduleMail(anyString(), any(Date.class));
+    }
+
+    private OutboxMail getOutboxMail(int attempts) {
+        return OutboxMail.builder()
+                .id(UUID.randomUUID().toString())
+                .from("noreply@barracks.io")
+                .replyTo("support@barracks.io")
+                .recipients(Collections.singletonList("joe@dalton.fw"))
+                .subject(UUID.randomUUID().toString())
+                .text("text")
+                .html("<p>html</p>")
+                .status(OutboxMailStatus.PENDING)
+                .attempts(attempts)
+                .nextAttemptDate(new Date())
+                .build();
+    }
+
+}
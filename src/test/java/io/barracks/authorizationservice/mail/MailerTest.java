@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.mail;
+
+import io.barracks.authorizationservice.model.PasswordResetToken;
+import io.barracks.authorizationservice.utils.PasswordResetTokenUtils;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class MailerTest {
+
+    @Test
+    public void compileTemplates_whenTemplatesExist_shouldRenderHtmlAndTextContent() throws Exception {
+        // Given
+        final PasswordResetMailer mailer = new PasswordResetMailer();
+        final PasswordResetToken token = PasswordResetTokenUtils.getPasswordResetToken();
+        final HandleBarTemplateContext<PasswordResetToken> context = new HandleBarTemplateContext<>(token, "app.barracks.io");
+
+        // When
+        mailer.compileTemplates();
+
+        // Then
+        assertThat(mailer.getHtmlContent(context)).contains(token.getToken()).contains("app.barracks.io");
+        assertThat(mailer.getTextContent(context)).contains(token.getToken()).contains("testPassReset%40barracks.io");
+    }
+
+    @Test
+    public void getHtmlContent_whenTemplatesWereNotCompiledYet_shouldCompileThemOnFirstUse() throws Exception {
+        // Given
+        final PasswordResetMailer mailer = new PasswordResetMailer();
+        final PasswordResetToken token = PasswordResetTokenUtils.getPasswordResetToken();
+        final HandleBarTemplateContext<PasswordResetToken> context = new HandleBarTemplateContext<>(token, "app.barracks.io");
+
+        // When
+        final String html = mailer.getHtmlContent(context);
+
+        // Then
+        assertThat(html).contains(token.getToken());
+        assertThat(mailer.getTextContent(context)).contains(token.getToken());
+    }
+
+    @Test
+    public void compileTemplates_forEveryMailer_shouldSucceed() {
+        new PasswordResetMailer().compileTemplates();
+        new PasswordConfirmAccountMailer().compileTemplates();
+    }
+
+    @Test
+    public void compileTemplates_whenTemplatesAreMissing_shouldFailFast() {
+        // Given
+        final Mailer<PasswordResetToken> mailer = new Mailer<PasswordResetToken>() {
+            @Override
+            protected String[] getRecipients(HandleBarTemplateContext<PasswordResetToken> object) {
+                return new String[0];
+            }
+
+            @Override
+            protected String getSubject(HandleBarTemplateContext<PasswordResetToken> object) {
+                return "";
+            }
+        };
+
+        // When / Then
+        assertThatExceptionOfType(EmailTemplateException.class).isThrownBy(mailer::compileTemplates);
+    }
+
+}
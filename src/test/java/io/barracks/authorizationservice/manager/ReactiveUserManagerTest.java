@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.manager;
+
+import io.barracks.authorizationservice.cache.AuthenticationCache;
+import io.barracks.authorizationservice.exception.BarracksAuthenticationException;
+import io.barracks.authorizationservice.metrics.AuthenticationMetrics;
+import io.barracks.authorizationservice.metrics.AuthenticationStage;
+import io.barracks.authorizationservice.model.User;
+import io.barracks.authorizationservice.repository.ReactiveUserRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReactiveUserManagerTest {
+
+    @Mock
+    private ReactiveUserRepository reactiveUserRepository;
+
+    @Mock
+    private AuthenticationCache authenticationCache;
+
+    @Mock
+    private AuthenticationMetrics authenticationMetrics;
+
+    private ReactiveUserManager reactiveUserManager;
+
+    @Before
+    public void setUp() {
+        reactiveUserManager = new ReactiveUserManager(reactiveUserRepository, authenticationCache, authenticationMetrics);
+    }
+
+    @Test
+    public void getUserByApiKey_whenUserIsCached_shouldNotQueryRepositoryAndRecordSuccess() {
+        // Given
+        final User user = User.builder().id(UUID.randomUUID().toString()).apiKey("apiKey").build();
+        when(authenticationCache.getUserByApiKeyAsync(eq(user.getApiKey()), any()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(user)));
+
+        // When
+        final User result = reactiveUserManager.getUserByApiKey(user.getApiKey()).join();
+
+        // Then
+        assertThat(result).isEqualTo(user);
+        verifyZeroInteractions(reactiveUserRepository);
+        verify(authenticationMetrics).record(eq(AuthenticationStage.USER_FIND_BY_API_KEY), eq(true), anyLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getUserByApiKey_whenUserIsNotCached_shouldLoadFromReactiveRepository() {
+        // Given
+        final User user = User.builder().id(UUID.randomUUID().toString()).apiKey("apiKey").build();
+        final ArgumentCaptor<Function> loader = ArgumentCaptor.forClass(Function.class);
+        final CompletableFuture<Optional<User>> repositoryResult = CompletableFuture.completedFuture(Optional.of(user));
+        when(reactiveUserRepository.findByApiKey(user.getApiKey())).thenReturn(repositoryResult);
+        when(authenticationCache.getUserByApiKeyAsync(eq(user.getApiKey()), loader.capture()))
+                .thenReturn(repositoryResult);
+
+        // When
+        reactiveUserManager.getUserByApiKey(user.getApiKey()).join();
+
+        // Then
+        assertThat(loader.getValue().apply(user.getApiKey())).isSameAs(repositoryResult);
+    }
+
+    @Test
+    public void getUserByApiKey_whenUserIsNotFound_shouldFailWithAuthenticationExceptionAndRecordFailure() {
+        // Given
+        when(authenticationCache.getUserByApiKeyAsync(eq("apiKey"), any()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        // When / Then
+        assertThatExceptionOfType(CompletionException.class)
+                .isThrownBy(() -> reactiveUserManager.getUserByApiKey("apiKey").join())
+                .withCauseInstanceOf(BarracksAuthenticationException.class);
+        verify(authenticationMetrics).record(eq(AuthenticationStage.USER_FIND_BY_API_KEY), eq(false), anyLong());
+    }
+
+}
@@ -24,11 +24,17 @@
 
 package io.barracks.authorizationservice.manager;
 
+import io.barracks.authorizationservice.cache.AuthenticationCache;
 import io.barracks.authorizationservice.exception.UnknownTokenException;
+import io.barracks.authorizationservice.model.CursorPage;
 import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.TokenCursor;
+import io.barracks.authorizationservice.model.TokenRevocation;
 import io.barracks.authorizationservice.model.User;
 import io.barracks.authorizationservice.repository.TokenRepository;
 import io.barracks.authorizationservice.security.jwt.TokenHandler;
+import io.barracks.authorizationservice.utils.TokenUtils;
+import org.bson.types.ObjectId;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -38,6 +44,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.util.CloseableIterator;
 
 import java.util.*;
 
@@ -54,13 +61,16 @@ public class TokenManagerTest {
     @Mock
     private TokenHandler tokenHandler;
 
+    @Mock
+    private AuthenticationCache authenticationCache;
+
     private TokenManager manager;
 
     private User user;
 
     @Before
     public void setUp() {
-        manager = spy(new TokenManager(tokenHandler, tokenRepository));
+        manager = spy(new TokenManager(tokenHandler, tokenRepository, authenticationCache));
         reset(manager, tokenRepository);
         user = User.builder().email("test@barracks.io").id(UUID.randomUUID().toString()).build();
     }
@@ -117,6 +127,91 @@ public class TokenManagerTest {
     }
 
 
+    @Test
+    public void getTokensWithCursor_whenMoreTokensThanLimit_shouldReturnNextCursorWithoutCounting() {
+        // Given
+        final Token token1 = TokenUtils.getToken();
+        final Token token2 = TokenUtils.getToken();
+        final Token token3 = TokenUtils.getToken();
+        when(tokenRepository.getTokensByUserIdAfter(user.getId(), null, 3)).thenReturn(Arrays.asList(token1, token2, token3));
+
+        // When
+        final CursorPage<Token> result = manager.getTokensForUser(user, "", 2, false);
+
+        // Then
+        verify(tokenRepository).getTokensByUserIdAfter(user.getId(), null, 3);
+        verify(tokenRepository, never()).countByUserId(anyString());
+        assertThat(result.getContent()).containsExactly(token1, token2);
+        assertThat(TokenCursor.decode(result.getNext())).isEqualTo(TokenCursor.after(token2));
+        assertThat(result.getTotal()).isNull();
+    }
+
+    @Test
+    public void getTokensWithCursor_whenLastPageAndCountRequested_shouldReturnTotalWithoutNextCursor() {
+        // Given
+        final Token token = TokenUtils.getToken();
+        final TokenCursor cursor = new TokenCursor(new Date(), new ObjectId().toHexString());
+        when(tokenRepository.getTokensByUserIdAfter(user.getId(), cursor, 3)).thenReturn(Collections.singletonList(token));
+        when(tokenRepository.countByUserId(user.getId())).thenReturn(3L);
+
+        // When
+        final CursorPage<Token> result = manager.getTokensForUser(user, cursor.encode(), 2, true);
+
+        // Then
+        verify(tokenRepository).getTokensByUserIdAfter(user.getId(), cursor, 3);
+        verify(tokenRepository).countByUserId(user.getId());
+        assertThat(result.getContent()).containsExactly(token);
+        assertThat(result.getNext()).isNull();
+        assertThat(result.getTotal()).isEqualTo(3L);
+    }
+
+    @Test
+    public void streamTokenSummaries_shouldDecodeCursorAndFetchOneTokenMoreThanLimit() {
+        // Given
+        final TokenCursor cursor = new TokenCursor(new Date(), new ObjectId().toHexString());
+        @SuppressWarnings("unchecked")
+        final CloseableIterator<Token> expected = mock(CloseableIterator.class);
+        when(tokenRepository.streamTokenSummariesByUserIdAfter(user.getId(), cursor, 11)).thenReturn(expected);
+
+        // When
+        final CloseableIterator<Token> result = manager.streamTokenSummariesForUser(user, cursor.encode(), 10);
+
+        // Then
+        verify(tokenRepository).streamTokenSummariesByUserIdAfter(user.getId(), cursor, 11);
+        assertThat(result).isSameAs(expected);
+    }
+
+    @Test
+    public void revokeTokensOfUser_shouldRevokeDistinctIdsInOneCallAndReturnCounts() {
+        // Given
+        final String id1 = UUID.randomUUID().toString();
+        final String id2 = UUID.randomUUID().toString();
+        final Set<String> distinctIds = new HashSet<>(Arrays.asList(id1, id2));
+        when(tokenRepository.revokeTokensOfUser(user.getId(), distinctIds)).thenReturn(1L);
+
+        // When
+        final TokenRevocation result = manager.revokeTokensOfUser(user, Arrays.asList(id1, id2, id1));
+
+        // Then
+        verify(tokenRepository).revokeTokensOfUser(user.getId(), distinctIds);
+        verify(authenticationCache).invalidateTokensOfUser(user.getId());
+        assertThat(result).isEqualTo(TokenRevocation.builder().requested(2).revoked(1L).build());
+    }
+
+    @Test
+    public void revokeAllTokensOfUser_shouldRevokeInOneCallAndReturnCount() {
+        // Given
+        when(tokenRepository.revokeAllTokensOfUser(user.getId())).thenReturn(5L);
+
+        // When
+        final TokenRevocation result = manager.revokeAllTokensOfUser(user);
+
+        // Then
+        verify(tokenRepository).revokeAllTokensOfUser(user.getId());
+        verify(authenticationCache).invalidateTokensOfUser(user.getId());
+        assertThat(result).isEqualTo(TokenRevocation.builder().revoked(5L).build());
+    }
+
     @Test
     public void getTokenByValue_whenTokenExists_shouldCallRepositoryAndReturnResult() {
         // Given
@@ -169,8 +264,21 @@ public class TokenManagerTest {
 
         // Then
         verify(tokenRepository).revokeToken(token.getId());
+        verify(authenticationCache).invalidateToken(token);
         assertThat(result.getId()).isEqualTo(token.getId());
         assertThat(result.getUserId()).isEqualTo(user.getId());
         assertThat(result.isRevoked()).isEqualTo(true);
     }
+
+    @Test
+    public void getCachedTokenByValue_whenTokenIsNotCached_shouldThrowException() {
+        // Given
+        final String value = UUID.randomUUID().toString();
+        doReturn(Optional.empty()).when(authenticationCache).getTokenByValue(value);
+
+        // When / Then
+        assertThatExceptionOfType(UnknownTokenException.class)
+                .isThrownBy(() -> manager.getCachedTokenByValue(value));
+        verifyZeroInteractions(tokenRepository);
+    }
 }
@@ -0,0 +1,163 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.manager;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import io.barracks.authorizationservice.model.TokenUsage;
+import io.barracks.authorizationservice.repository.TokenRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TokenUsageRecorderTest {
+
+    @Mock
+    private TokenRepository tokenRepository;
+
+    private TokenUsageRecorder recorder;
+
+    @Before
+    public void setUp() {
+        recorder = new TokenUsageRecorder(tokenRepository, 10000);
+    }
+
+    @Test
+    public void flush_whenTokensWereUsedConcurrently_shouldWriteOneAggregatedUsagePerToken() throws Exception {
+        // Given
+        final List<String> tokenIds = IntStream.range(0, 50).mapToObj(Integer::toString).collect(Collectors.toList());
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 4; i++) {
+            executor.submit(() -> tokenIds.forEach(recorder::record));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        recorder.flush();
+
+        // Then
+        final Collection<TokenUsage> usages = captureFlushedUsages(1).get(0);
+        assertThat(usages).extracting(TokenUsage::getTokenId).containsOnlyElementsOf(tokenIds).hasSize(tokenIds.size());
+        assertThat(usages).extracting(TokenUsage::getUseCount).containsOnly(4L);
+    }
+
+    @Test
+    public void flush_whenNothingWasUsed_shouldNotWrite() {
+        // When
+        recorder.flush();
+
+        // Then
+        verifyZeroInteractions(tokenRepository);
+    }
+
+    @Test
+    public void flush_whenWriteFails_shouldKeepUsageForNextFlush() {
+        // Given
+        recorder.record("token");
+        doThrow(new DataAccessResourceFailureException("down"))
+                .doNothing()
+                .when(tokenRepository).recordTokenUsages(anyListOf(TokenUsage.class));
+        recorder.flush();
+        recorder.record("token");
+
+        // When
+        recorder.flush();
+
+        // Then
+        final List<List<TokenUsage>> flushed = captureFlushedUsages(2);
+        assertThat(flushed.get(1)).extracting(TokenUsage::getUseCount).containsExactly(2L);
+    }
+
+    @Test
+    public void start_whenFlushFailsUnexpectedly_shouldKeepFlushing() throws Exception {
+        // Given
+        recorder = new TokenUsageRecorder(tokenRepository, 10);
+        doThrow(new IllegalStateException("unexpected")).doNothing().when(tokenRepository).recordTokenUsages(anyListOf(TokenUsage.class));
+        recorder.start();
+
+        // When
+        try {
+            recorder.record("first");
+            verify(tokenRepository, timeout(2000)).recordTokenUsages(anyListOf(TokenUsage.class));
+            recorder.record("second");
+
+            // Then
+            verify(tokenRepository, timeout(2000).times(2)).recordTokenUsages(anyListOf(TokenUsage.class));
+        } finally {
+            recorder.stop();
+        }
+    }
+
+    @Test
+    public void flush_whenBulkWritePartlyFails_shouldRetryOnlyFailedUsages() {
+        // Given
+        recorder.record("applied");
+        recorder.record("failed");
+        final BulkOperationException failure = mock(BulkOperationException.class);
+        doAnswer(invocation -> {
+            final List<TokenUsage> usages = (List<TokenUsage>) invocation.getArguments()[0];
+            final int failedIndex = usages.stream().map(TokenUsage::getTokenId).collect(Collectors.toList()).indexOf("failed");
+            doReturn(Collections.singletonList(new BulkWriteError(11000, "failed", new BasicDBObject(), failedIndex)))
+                    .when(failure).getErrors();
+            throw failure;
+        }).doNothing().when(tokenRepository).recordTokenUsages(anyListOf(TokenUsage.class));
+        recorder.flush();
+
+        // When
+        recorder.flush();
+
+        // Then
+        final List<List<TokenUsage>> flushed = captureFlushedUsages(2);
+        assertThat(flushed.get(1)).extracting(TokenUsage::getTokenId).containsExactly("failed");
+        assertThat(flushed.get(1)).extracting(TokenUsage::getUseCount).containsExactly(1L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<TokenUsage>> captureFlushedUsages(int times) {
+        final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(tokenRepository, times(times)).recordTokenUsages(captor.capture());
+        return (List) captor.getAllValues();
+    }
+
+}
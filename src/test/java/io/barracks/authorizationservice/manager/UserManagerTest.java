@@ -24,9 +24,11 @@
 
 package io.barracks.authorizationservice.manager;
 
+import io.barracks.authorizationservice.cache.AuthenticationCache;
 import io.barracks.authorizationservice.exception.*;
 import io.barracks.authorizationservice.mail.PasswordConfirmAccountMailer;
 import io.barracks.authorizationservice.mail.PasswordResetMailer;
+import io.barracks.authorizationservice.metrics.AuthenticationMetrics;
 import io.barracks.authorizationservice.model.PasswordResetToken;
 import io.barracks.authorizationservice.model.User;
 import io.barracks.authorizationservice.model.UserStatus;
@@ -44,14 +46,19 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -75,6 +82,12 @@ public class UserManagerTest {
     @Mock
     private PasswordResetTokenRepository passwordResetTokenRepository;
 
+    @Mock
+    private AuthenticationCache authenticationCache;
+
+    @Mock
+    private AuthenticationMetrics authenticationMetrics;
+
     @InjectMocks
     private UserManager userManager = new UserManager();
 
@@ -139,6 +152,7 @@ public class UserManagerTest {
 
         // Then
         verify(userRepository).updateUserStatus(userId, status);
+        verify(authenticationCache).invalidateUser(user.getEmail());
         assertThat(response).isEqualTo(user);
     }
 
@@ -161,17 +175,38 @@ public class UserManagerTest {
         // Given
         final User user = User.builder().id("123").firstName("Joe").lastName("Dalton").email("joe@dalton.fw")
                 .encryptedPassword("").disabled(false).status(UserStatus.ACTIVE).company("McDonald").build();
-        final PasswordResetToken insertedPasswordResetToken = PasswordResetTokenUtils.getPasswordResetToken().toBuilder().token("&^*^^*^").userEmail(user.getEmail()).build();
-        when(passwordResetTokenRepository.insert(any(PasswordResetToken.class))).thenReturn(insertedPasswordResetToken);
+        when(passwordResetTokenRepository.findRecentOrInsert(any(PasswordResetToken.class)))
+                .thenAnswer(invocation -> invocation.getArguments()[0]);
         when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        final ArgumentCaptor<PasswordResetToken> captor = ArgumentCaptor.forClass(PasswordResetToken.class);
 
         // When
         userManager.initPassword(user.getEmail());
 
         // Then
         verify(userRepository).findByEmail(user.getEmail());
-        verify(passwordResetTokenRepository).insert(any(PasswordResetToken.class));
-        verify(passwordConfirmAccountMailer).send(insertedPasswordResetToken);
+        verify(passwordResetTokenRepository).findRecentOrInsert(captor.capture());
+        verify(passwordConfirmAccountMailer).send(captor.getValue());
+        assertThat(captor.getValue().getUserEmail()).isEqualTo(user.getEmail());
+        assertThat(captor.getValue().getExpiryDate()).isAfter(captor.getValue().getCreationDate());
+    }
+
+    @Test
+    public void setPassword_whenRecentTokenExists_shouldNotSendAnotherEmail() throws Exception {
+        // Given
+        final User user = User.builder().id("123").firstName("Joe").lastName("Dalton").email("joe@dalton.fw")
+                .encryptedPassword("").disabled(false).status(UserStatus.ACTIVE).company("McDonald").build();
+        final PasswordResetToken existingPasswordResetToken = PasswordResetTokenUtils.getPasswordResetToken().toBuilder().userEmail(user.getEmail()).build();
+        when(passwordResetTokenRepository.findRecentOrInsert(any(PasswordResetToken.class)))
+                .thenReturn(existingPasswordResetToken);
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+
+        // When
+        userManager.initPassword(user.getEmail());
+
+        // Then
+        verify(passwordResetTokenRepository).findRecentOrInsert(any(PasswordResetToken.class));
+        verifyZeroInteractions(passwordConfirmAccountMailer);
     }
 
     @Test
@@ -192,84 +227,107 @@ public class UserManagerTest {
     public void resetPassword_whenUserEmailExists_shouldSendAnEmailAndCreateToken() throws Exception {
         // Given
         final User user = User.builder().id("123").firstName("Joe").lastName("Dalton").email("joe@dalton.fw").disabled(false).status(UserStatus.ACTIVE).build();
-        final PasswordResetToken insertedPasswordResetToken = PasswordResetTokenUtils.getPasswordResetToken().toBuilder().token("&^*^^*^").userEmail(user.getEmail()).build();
         when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
-        when(passwordResetTokenRepository.insert(any(PasswordResetToken.class))).thenReturn(insertedPasswordResetToken);
+        when(passwordResetTokenRepository.findRecentOrInsert(any(PasswordResetToken.class)))
+                .thenAnswer(invocation -> invocation.getArguments()[0]);
+        final ArgumentCaptor<PasswordResetToken> captor = ArgumentCaptor.forClass(PasswordResetToken.class);
 
         // When
         userManager.resetPassword(user.getEmail());
 
         // Then
         verify(userRepository).findByEmail(user.getEmail());
-        verify(passwordResetTokenRepository).insert(any(PasswordResetToken.class));
-        verify(passwordResetMailer).send(insertedPasswordResetToken);
+        verify(passwordResetTokenRepository).findRecentOrInsert(captor.capture());
+        verify(passwordResetMailer).send(captor.getValue());
     }
 
     @Test
-    public void confirmResetPassword_whenTokenAndUserExist_shouldEncryptPasswordAndUpdateUserAndUpdateToken() throws Exception {
+    public void resetPassword_whenRequestedTwiceWithinWindow_shouldReuseDedupKeyAndSendOnce() throws Exception {
         // Given
+        ReflectionTestUtils.setField(userManager, "passwordResetDedupWindowMillis", 300000L);
         final User user = User.builder().id("123").firstName("Joe").lastName("Dalton").email("joe@dalton.fw").disabled(false).status(UserStatus.ACTIVE).build();
-        final String password = "password";
-        final String encodedPassword = "encodedPassword";
-        final PasswordResetToken passwordResetToken = PasswordResetTokenUtils.getPasswordResetToken().toBuilder().token("&^*^^*^").userEmail(user.getEmail()).build();
         when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
-        when(passwordResetTokenRepository.findByToken(passwordResetToken.getToken())).thenReturn(Optional.of(passwordResetToken));
-        when(passwordEncoder.encode(password)).thenReturn(encodedPassword);
+        final Map<String, PasswordResetToken> stored = new HashMap<>();
+        when(passwordResetTokenRepository.findRecentOrInsert(any(PasswordResetToken.class)))
+                .thenAnswer(invocation -> {
+                    final PasswordResetToken candidate = (PasswordResetToken) invocation.getArguments()[0];
+                    return stored.computeIfAbsent(candidate.getDedupKey(), key -> candidate);
+                });
+        final ArgumentCaptor<PasswordResetToken> captor = ArgumentCaptor.forClass(PasswordResetToken.class);
 
         // When
-        userManager.confirmResetPassword(passwordResetToken.getToken(), password);
+        userManager.resetPassword(user.getEmail());
+        userManager.resetPassword(user.getEmail());
 
         // Then
-        verify(passwordEncoder).encode(password);
-        verify(userRepository).findByEmail(user.getEmail());
-        verify(userRepository).updateUserPassword(user.getId(), encodedPassword);
-        final ArgumentCaptor<PasswordResetToken> passwordResetTokenArgumentCaptor = ArgumentCaptor.forClass(PasswordResetToken.class);
-        verify(passwordResetTokenRepository).save(passwordResetTokenArgumentCaptor.capture());
-        verify(passwordResetTokenRepository).findByToken(passwordResetToken.getToken());
+        verify(passwordResetTokenRepository, times(2)).findRecentOrInsert(captor.capture());
+        assertThat(captor.getAllValues().get(0).getDedupKey())
+                .startsWith(user.getEmail())
+                .isEqualTo(captor.getAllValues().get(1).getDedupKey());
+        verify(passwordResetMailer, times(1)).send(any(PasswordResetToken.class));
+    }
+
+    @Test
+    public void resetPassword_whenRequestsFallInDifferentWindows_shouldUseDifferentDedupKeys() throws Exception {
+        // Given
+        ReflectionTestUtils.setField(userManager, "passwordResetDedupWindowMillis", 1L);
+        final User user = User.builder().id("123").email("joe@dalton.fw").status(UserStatus.ACTIVE).build();
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        when(passwordResetTokenRepository.findRecentOrInsert(any(PasswordResetToken.class)))
+                .thenAnswer(invocation -> invocation.getArguments()[0]);
+        final ArgumentCaptor<PasswordResetToken> captor = ArgumentCaptor.forClass(PasswordResetToken.class);
+
+        // When
+        userManager.resetPassword(user.getEmail());
+        Thread.sleep(2);
+        userManager.resetPassword(user.getEmail());
 
-        assertThat(passwordResetTokenArgumentCaptor.getValue().getExpiryDate()).isBefore(new Date());
+        // Then
+        verify(passwordResetTokenRepository, times(2)).findRecentOrInsert(captor.capture());
+        assertThat(captor.getAllValues().get(0).getDedupKey()).isNotEqualTo(captor.getAllValues().get(1).getDedupKey());
+        verify(passwordResetMailer, times(2)).send(any(PasswordResetToken.class));
     }
 
     @Test
-    public void confirmResetPassword_shouldUpdateUserStatus_whenUserIsPendingVerification() throws Exception {
+    public void confirmResetPassword_whenTokenAndUserExist_shouldConsumeTokenAndResetPasswordInTwoCalls() throws Exception {
         // Given
-        final User user = User.builder().id("123").firstName("Joe").lastName("Dalton").email("joe@dalton.fw").disabled(false).status(UserStatus.EMAIL_VERIFICATION_PENDING).build();
+        final String email = "joe@dalton.fw";
         final String password = "password";
         final String encodedPassword = "encodedPassword";
-        final PasswordResetToken passwordResetToken = PasswordResetTokenUtils.getPasswordResetToken().toBuilder().token("&^*^^*^").userEmail(user.getEmail()).build();
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
-        when(passwordResetTokenRepository.findByToken(passwordResetToken.getToken())).thenReturn(Optional.of(passwordResetToken));
+        final PasswordResetToken passwordResetToken = PasswordResetTokenUtils.getPasswordResetToken().toBuilder().token("&^*^^*^").userEmail(email).build();
+        when(passwordResetTokenRepository.consumeToken(eq(passwordResetToken.getToken()), any(Date.class))).thenReturn(Optional.of(passwordResetToken));
         when(passwordEncoder.encode(password)).thenReturn(encodedPassword);
+        when(userRepository.resetUserPassword(email, encodedPassword)).thenReturn(true);
 
         // When
         userManager.confirmResetPassword(passwordResetToken.getToken(), password);
 
         // Then
         verify(passwordEncoder).encode(password);
-        verify(userRepository).findByEmail(user.getEmail());
-        verify(userRepository).updateUserPassword(user.getId(), encodedPassword);
-        verify(userRepository).updateUserStatus(user.getId(), UserStatus.SUBSCRIPTION_PENDING);
-        final ArgumentCaptor<PasswordResetToken> passwordResetTokenArgumentCaptor = ArgumentCaptor.forClass(PasswordResetToken.class);
-        verify(passwordResetTokenRepository).save(passwordResetTokenArgumentCaptor.capture());
-        verify(passwordResetTokenRepository).findByToken(passwordResetToken.getToken());
+        verify(passwordResetTokenRepository).consumeToken(eq(passwordResetToken.getToken()), any(Date.class));
+        verify(userRepository).resetUserPassword(email, encodedPassword);
+        verify(authenticationCache).invalidateUser(email);
+        verifyNoMoreInteractions(passwordResetTokenRepository, userRepository);
     }
 
     @Test
     public void confirmResetPassword_whenUserEmailDoesNotExist_shouldThrowAnException() throws Exception {
         // Given
         final String password = "password";
+        final String encodedPassword = "encodedPassword";
         final PasswordResetToken passwordResetToken = PasswordResetTokenUtils.getPasswordResetToken().toBuilder()
                 .token("token")
                 .userEmail("joe@dalton.fw")
                 .build();
-        when(passwordResetTokenRepository.findByToken(passwordResetToken.getToken())).thenReturn(Optional.of(passwordResetToken));
-        when(userRepository.findByEmail(passwordResetToken.getUserEmail())).thenReturn(Optional.empty());
+        when(passwordResetTokenRepository.consumeToken(eq(passwordResetToken.getToken()), any(Date.class))).thenReturn(Optional.of(passwordResetToken));
+        when(passwordEncoder.encode(password)).thenReturn(encodedPassword);
+        when(userRepository.resetUserPassword(passwordResetToken.getUserEmail(), encodedPassword)).thenReturn(false);
 
         // When / Then
         assertThatExceptionOfType(DataIntegrityException.class)
                 .isThrownBy(() -> userManager.confirmResetPassword(passwordResetToken.getToken(), password));
-        verify(passwordResetTokenRepository).findByToken(passwordResetToken.getToken());
-        verify(userRepository).findByEmail(passwordResetToken.getUserEmail());
+        verify(passwordResetTokenRepository).consumeToken(eq(passwordResetToken.getToken()), any(Date.class));
+        verify(userRepository).resetUserPassword(passwordResetToken.getUserEmail(), encodedPassword);
     }
 
     @Test
@@ -277,12 +335,14 @@ public class UserManagerTest {
         // Given
         final String password = "password";
         final PasswordResetToken passwordResetToken = PasswordResetTokenUtils.getPasswordResetToken().toBuilder().token("token").userEmail("joe@dalton.fw").build();
+        when(passwordResetTokenRepository.consumeToken(eq(passwordResetToken.getToken()), any(Date.class))).thenReturn(Optional.empty());
         when(passwordResetTokenRepository.findByToken(passwordResetToken.getToken())).thenReturn(Optional.empty());
 
         // When / Then
         assertThatExceptionOfType(PasswordResetTokenNotFoundException.class)
                 .isThrownBy(() -> userManager.confirmResetPassword(passwordResetToken.getToken(), password));
         verify(passwordResetTokenRepository).findByToken(passwordResetToken.getToken());
+        verifyZeroInteractions(userRepository, passwordEncoder);
     }
 
     @Test
@@ -290,11 +350,40 @@ public class UserManagerTest {
         // Given
         final String password = "password";
         final PasswordResetToken passwordResetToken = PasswordResetTokenUtils.getPasswordResetToken().toBuilder().expiryDate(new Date()).build();
+        when(passwordResetTokenRepository.consumeToken(eq(passwordResetToken.getToken()), any(Date.class))).thenReturn(Optional.empty());
         when(passwordResetTokenRepository.findByToken(passwordResetToken.getToken())).thenReturn(Optional.of(passwordResetToken));
 
         // When / Then
         assertThatExceptionOfType(PasswordResetTokenExpiredException.class)
                 .isThrownBy(() -> userManager.confirmResetPassword(passwordResetToken.getToken(), password));
         verify(passwordResetTokenRepository).findByToken(passwordResetToken.getToken());
+        verifyZeroInteractions(userRepository, passwordEncoder);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getUserByApiKey_whenUserIsNotFound_shouldThrowAuthenticationException() throws Exception {
+        // Given
+        final String apiKey = "apiKey";
+        when(authenticationCache.getUserByApiKey(apiKey)).thenReturn(Optional.empty());
+
+        // When / Then
+        assertThatExceptionOfType(BarracksAuthenticationException.class)
+                .isThrownBy(() -> userManager.getUserByApiKey(apiKey));
+        verifyZeroInteractions(userRepository);
+    }
+
+    @Test
+    public void getCachedUserByEmail_whenUserIsCached_shouldNotQueryRepository() throws Exception {
+        // Given
+        final User user = User.builder().id(UUID.randomUUID().toString()).email("joe@dalton.fw").build();
+        when(authenticationCache.getUserByEmail(user.getEmail())).thenReturn(Optional.of(user));
+
+        // When
+        final User result = userManager.getCachedUserByEmail(user.getEmail());
+
+        // Then
+        assertThat(result).isEqualTo(user);
+        verifyZeroInteractions(userRepository);
+    }
+
+}
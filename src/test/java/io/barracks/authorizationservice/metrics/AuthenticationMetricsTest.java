@@ -0,0 +1,82 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.metrics;
+
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class AuthenticationMetricsTest {
+
+    @Test
+    public void metrics_shouldExportPercentilesByStageTokenTypeAndOutcome() {
+        // Given
+        final AuthenticationMetrics authenticationMetrics = new AuthenticationMetrics(60000);
+        for (int i = 1; i <= 100; i++) {
+            authenticationMetrics.record(AuthenticationStage.TOKEN_USER_LOOKUP, TokenType.SESSION, true, startedMillisAgo(i));
+        }
+        authenticationMetrics.record(AuthenticationStage.USER_FIND_BY_EMAIL, false, startedMillisAgo(5));
+
+        // When
+        final Map<String, Number> metrics = metrics(authenticationMetrics);
+
+        // Then
+        assertThat(metrics.get("auth.latency.token.user_lookup.session.success.count")).isEqualTo(100L);
+        assertThat(metrics.get("auth.latency.token.user_lookup.session.success.p50").doubleValue()).isCloseTo(50.0, within(2.0));
+        assertThat(metrics.get("auth.latency.token.user_lookup.session.success.p99").doubleValue()).isCloseTo(99.0, within(2.0));
+        assertThat(metrics.get("auth.latency.user.find_by_email.failure.count")).isEqualTo(1L);
+        assertThat(metrics).doesNotContainKey("auth.latency.token.user_lookup.api.success.count");
+    }
+
+    @Test
+    public void metrics_whenWindowIsOver_shouldExportOnlyNewLatenciesButCumulativeCount() {
+        // Given
+        final AuthenticationMetrics authenticationMetrics = new AuthenticationMetrics(0);
+        authenticationMetrics.record(AuthenticationStage.LOGIN_AUTHENTICATE, true, startedMillisAgo(500));
+        metrics(authenticationMetrics);
+        authenticationMetrics.record(AuthenticationStage.LOGIN_AUTHENTICATE, true, startedMillisAgo(10));
+
+        // When
+        final Map<String, Number> metrics = metrics(authenticationMetrics);
+
+        // Then
+        assertThat(metrics.get("auth.latency.login.authenticate.success.count")).isEqualTo(2L);
+        assertThat(metrics.get("auth.latency.login.authenticate.success.max").doubleValue()).isLessThan(100.0);
+    }
+
+    private static long startedMillisAgo(long millis) {
+        return System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static Map<String, Number> metrics(AuthenticationMetrics authenticationMetrics) {
+        return authenticationMetrics.metrics().stream().collect(Collectors.toMap(Metric::getName, Metric::getValue));
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServerTimingFilterTest {
+
+    private final AuthenticationMetrics authenticationMetrics = new AuthenticationMetrics(60000);
+    private final ServerTimingJacksonConverter converter = new ServerTimingJacksonConverter(new ObjectMapper());
+
+    @Test
+    public void doFilter_whenEnabled_shouldReportRecordedStagesAndSerialization() throws Exception {
+        // Given
+        final ServerTimingFilter filter = new ServerTimingFilter(true);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final FilterChain chain = (req, res) -> {
+            final long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(2);
+            authenticationMetrics.record(AuthenticationStage.TOKEN_PARSE, TokenType.SESSION, true, start);
+            authenticationMetrics.record(AuthenticationStage.TOKEN_USER_LOOKUP, TokenType.SESSION, true, start);
+            authenticationMetrics.record(AuthenticationStage.TOKEN_TOTAL, TokenType.SESSION, true, start);
+            converter.write(Collections.singletonMap("id", "user"), MediaType.APPLICATION_JSON, new ServletServerHttpResponse((HttpServletResponse) res));
+        };
+
+        // When
+        filter.doFilter(new MockHttpServletRequest("GET", "/me"), response, chain);
+
+        // Then
+        assertThat(response.getHeader(ServerTimingFilter.HEADER_NAME))
+                .matches("jwt;dur=\\d+\\.\\d{3}, user;dur=\\d+\\.\\d{3}, serialization;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}");
+        assertThat(response.getContentAsString()).isEqualTo("{\"id\":\"user\"}");
+    }
+
+    @Test
+    public void doFilter_whenDisabled_shouldNeitherBufferNorReport() throws Exception {
+        // Given
+        final ServerTimingFilter filter = new ServerTimingFilter(false);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final FilterChain chain = (req, res) -> {
+            authenticationMetrics.record(AuthenticationStage.TOKEN_PARSE, TokenType.SESSION, true, System.nanoTime());
+            res.getWriter().write("body");
+            assertThat(res).isSameAs(response);
+        };
+
+        // When
+        filter.doFilter(new MockHttpServletRequest("GET", "/me"), response, chain);
+
+        // Then
+        assertThat(response.getHeader(ServerTimingFilter.HEADER_NAME)).isNull();
+        assertThat(response.getContentAsString()).isEqualTo("body");
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.model;
+
+import io.barracks.authorizationservice.exception.InvalidCursorException;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class TokenCursorTest {
+
+    @Test
+    public void decode_whenCursorWasEncoded_shouldReturnSameCursor() {
+        // Given
+        final TokenCursor cursor = new TokenCursor(new Date(1234567890L), new ObjectId().toHexString());
+
+        // When
+        final TokenCursor result = TokenCursor.decode(cursor.encode());
+
+        // Then
+        assertThat(result).isEqualTo(cursor);
+    }
+
+    @Test
+    public void decode_whenCursorHasNoDate_shouldReturnSameCursor() {
+        // Given
+        final TokenCursor cursor = new TokenCursor(null, new ObjectId().toHexString());
+
+        // When
+        final TokenCursor result = TokenCursor.decode(cursor.encode());
+
+        // Then
+        assertThat(result).isEqualTo(cursor);
+    }
+
+    @Test
+    public void decode_whenCursorIsMalformed_shouldThrowException() {
+        // Given
+        final String cursor = "not a cursor";
+
+        // When / Then
+        assertThatExceptionOfType(InvalidCursorException.class)
+                .isThrownBy(() -> TokenCursor.decode(cursor));
+    }
+
+    @Test
+    public void decode_whenIdIsNotAnObjectId_shouldThrowException() {
+        // Given
+        final String cursor = new TokenCursor(new Date(1234567890L), "not-an-object-id").encode();
+
+        // When / Then
+        assertThatExceptionOfType(InvalidCursorException.class)
+                .isThrownBy(() -> TokenCursor.decode(cursor));
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.repository;
+
+import io.barracks.authorizationservice.model.OutboxMail;
+import io.barracks.authorizationservice.model.OutboxMailStatus;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@DataMongoTest
+public class OutboxMailRepositoryTest {
+
+    @Autowired
+    private OutboxMailRepository outboxMailRepository;
+
+    @Before
+    public void setUp() {
+        outboxMailRepository.deleteAll();
+    }
+
+    @Test
+    public void claimMails_whenMailsAreQueuedOrDue_shouldLeaseQueuedAndEarliestDueMails() {
+        // Given
+        final Date now = new Date();
+        final Date leaseEnd = new Date(now.getTime() + TimeUnit.MINUTES.toMillis(1));
+        final OutboxMail earliest = outboxMailRepository.insert(getOutboxMail(new Date(now.getTime() - 2000L)));
+        outboxMailRepository.insert(getOutboxMail(new Date(now.getTime() - 1000L)));
+        final OutboxMail queued = outboxMailRepository.insert(getOutboxMail(now));
+
+        // When
+        final List<OutboxMail> result = outboxMailRepository.claimMails(Collections.singletonList(queued.getId()), now, leaseEnd, 2);
+
+        // Then
+        assertThat(result).extracting(OutboxMail::getId).containsOnly(queued.getId(), earliest.getId());
+        assertThat(result).extracting(OutboxMail::getAttempts).containsOnly(1);
+        assertThat(result).extracting(OutboxMail::getNextAttemptDate).containsOnly(leaseEnd);
+        assertThat(result).extracting(OutboxMail::getClaimId).doesNotContainNull().containsOnly(result.get(0).getClaimId());
+    }
+
+    @Test
+    public void claimMails_whenMailIsAlreadyLeased_shouldNotClaimItAgain() {
+        // Given
+        final Date now = new Date();
+        final Date leaseEnd = new Date(now.getTime() + TimeUnit.MINUTES.toMillis(1));
+        final OutboxMail mail = outboxMailRepository.insert(getOutboxMail(now));
+        outboxMailRepository.claimMails(Collections.singletonList(mail.getId()), now, leaseEnd, 1);
+
+        // When
+        final List<OutboxMail> result = outboxMailRepository.claimMails(Collections.singletonList(mail.getId()), now, leaseEnd, 1);
+
+        // Then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void claimMails_shouldIgnoreFutureAndFailedMails() {
+        // Given
+        final Date now = new Date();
+        final Date leaseEnd = new Date(now.getTime() + TimeUnit.MINUTES.toMillis(1));
+        outboxMailRepository.insert(getOutboxMail(leaseEnd));
+        final OutboxMail failed = outboxMailRepository.insert(getOutboxMail(now));
+        outboxMailRepository.markMailAsFailed(failed.getId());
+
+        // When
+        final List<OutboxMail> result = outboxMailRepository.claimMails(Collections.emptyList(), now, leaseEnd, 10);
+
+        // Then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void markMailAsFailed_shouldSetTheFailureDateTheRetentionIndexExpiresOn() {
+        // Given
+        final Date before = new Date();
+        final OutboxMail mail = outboxMailRepository.insert(getOutboxMail(before));
+
+        // When
+        outboxMailRepository.markMailAsFailed(mail.getId());
+        final OutboxMail result = outboxMailRepository.findOne(mail.getId());
+
+        // Then
+        assertThat(result.getStatus()).isEqualTo(OutboxMailStatus.FAILED);
+        assertThat(result.getFailureDate()).isAfterOrEqualsTo(before);
+    }
+
+    @Test
+    public void rescheduleMail_shouldMakeMailDueAgainLater() {
+        // Given
+        final Date now = new Date();
+        final Date leaseEnd = new Date(now.getTime() + TimeUnit.MINUTES.toMillis(1));
+        final OutboxMail mail = outboxMailRepository.insert(getOutboxMail(now));
+        outboxMailRepository.claimMails(Collections.singletonList(mail.getId()), now, leaseEnd, 1);
+
+        // When
+        outboxMailRepository.rescheduleMail(mail.getId(), now);
+        final List<OutboxMail> result = outboxMailRepository.claimMails(Collections.emptyList(), now, leaseEnd, 1);
+
+        // Then
+        assertThat(result).extracting(OutboxMail::getAttempts).containsExactly(2);
+    }
+
+    private OutboxMail getOutboxMail(Date nextAttemptDate) {
+        return OutboxMail.builder()
+                .recipients(Collections.singletonList("joe@dalton.fw"))
+                .subject("subject")
+                .text("text")
+                .html("html")
+                .status(OutboxMailStatus.PENDING)
+                .nextAttemptDate(nextAttemptDate)
+                .build();
+    }
+
+}
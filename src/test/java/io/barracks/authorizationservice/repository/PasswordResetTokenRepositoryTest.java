@@ -35,6 +35,7 @@ import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.Date;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -79,4 +80,91 @@ public class PasswordResetTokenRepositoryTest {
         assertThat(result).isEmpty();
     }
 
+    @Test
+    public void findRecentOrInsert_WhenNoTokenSharesDedupKey_ShouldInsertCandidate() {
+        // Given
+        final PasswordResetToken other = PasswordResetTokenUtils.getPasswordResetToken();
+        passwordResetTokenRepository.save(other);
+        final PasswordResetToken candidate = PasswordResetTokenUtils.getPasswordResetToken().toBuilder().id(null).build();
+
+        // When
+        final PasswordResetToken result = passwordResetTokenRepository.findRecentOrInsert(candidate);
+
+        // Then
+        assertThat(result).isEqualTo(candidate.toBuilder().id(result.getId()).build());
+        assertThat(passwordResetTokenRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    public void findRecentOrInsert_WhenTokenSharesDedupKey_ShouldReturnItWithoutInserting() {
+        // Given
+        final PasswordResetToken recent = PasswordResetTokenUtils.getPasswordResetToken();
+        passwordResetTokenRepository.save(recent);
+        final PasswordResetToken candidate = PasswordResetTokenUtils.getPasswordResetToken().toBuilder()
+                .id(null)
+                .dedupKey(recent.getDedupKey())
+                .build();
+
+        // When
+        final PasswordResetToken result = passwordResetTokenRepository.findRecentOrInsert(candidate);
+
+        // Then
+        assertThat(result).isEqualTo(recent);
+        assertThat(passwordResetTokenRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void findRecentOrInsert_WhenTokenSharingDedupKeyWasConsumed_ShouldInsertCandidate() {
+        // Given
+        final PasswordResetToken consumed = PasswordResetTokenUtils.getPasswordResetToken();
+        passwordResetTokenRepository.save(consumed);
+        passwordResetTokenRepository.consumeToken(consumed.getToken(), new Date());
+        final PasswordResetToken candidate = PasswordResetTokenUtils.getPasswordResetToken().toBuilder()
+                .id(null)
+                .dedupKey(consumed.getDedupKey())
+                .build();
+
+        // When
+        final PasswordResetToken result = passwordResetTokenRepository.findRecentOrInsert(candidate);
+
+        // Then
+        assertThat(result.getToken()).isEqualTo(candidate.getToken());
+        assertThat(passwordResetTokenRepository.findByToken(consumed.getToken()))
+                .hasValueSatisfying(token -> assertThat(token.getDedupKey()).isNull());
+    }
+
+    @Test
+    public void consumeToken_WhenTokenIsValid_ShouldReturnItOnlyOnce() {
+        // Given
+        final PasswordResetToken passwordResetToken = PasswordResetTokenUtils.getPasswordResetToken();
+        passwordResetTokenRepository.save(passwordResetToken);
+        final Date now = new Date();
+
+        // When
+        final Optional<PasswordResetToken> first = passwordResetTokenRepository.consumeToken(passwordResetToken.getToken(), now);
+        final Optional<PasswordResetToken> second = passwordResetTokenRepository.consumeToken(passwordResetToken.getToken(), now);
+
+        // Then
+        assertThat(first).contains(passwordResetToken);
+        assertThat(second).isEmpty();
+        assertThat(passwordResetTokenRepository.findByToken(passwordResetToken.getToken()))
+                .hasValueSatisfying(token -> assertThat(token.getExpiryDate()).isEqualTo(now));
+    }
+
+    @Test
+    public void consumeToken_WhenTokenIsExpired_ShouldReturnEmpty() {
+        // Given
+        final Date now = new Date();
+        final PasswordResetToken passwordResetToken = PasswordResetTokenUtils.getPasswordResetToken().toBuilder()
+                .expiryDate(new Date(now.getTime() - 1000L))
+                .build();
+        passwordResetTokenRepository.save(passwordResetToken);
+
+        // When
+        final Optional<PasswordResetToken> result = passwordResetTokenRepository.consumeToken(passwordResetToken.getToken(), now);
+
+        // Then
+        assertThat(result).isEmpty();
+    }
+
 }
@@ -24,7 +24,11 @@
 
 package io.barracks.authorizationservice.repository;
 
+import io.barracks.authorizationservice.exception.InvalidCursorException;
 import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.TokenCursor;
+import io.barracks.authorizationservice.model.TokenUsage;
+import org.bson.types.ObjectId;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,13 +36,19 @@ import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
 @RunWith(SpringRunner.class)
 @DataMongoTest
@@ -111,6 +121,196 @@ public class TokenRepositoryTest {
         assertThat(result).containsOnlyElementsOf(expected);
     }
 
+    @Test
+    public void getTokensByUserIdAfter_whenTokensShareStartDate_shouldReturnEveryTokenOnceInOrder() {
+        // Given
+        final String userId = UUID.randomUUID().toString();
+        final List<String> expectedIds = saveTokensSharingStartDate(userId, new Date(1000000L));
+
+        // When
+        final List<Token> result = new ArrayList<>();
+        TokenCursor cursor = null;
+        List<Token> page;
+        do {
+            page = tokenRepository.getTokensByUserIdAfter(userId, cursor, 3);
+            result.addAll(page);
+            cursor = page.isEmpty() ? null : TokenCursor.after(page.get(page.size() - 1));
+        } while (!page.isEmpty());
+
+        // Then
+        assertThat(result).extracting(Token::getId).containsExactlyElementsOf(expectedIds);
+    }
+
+    @Test
+    public void getTokensByUserIdAfter_whenTokensHaveNoStartDate_shouldReturnEveryTokenOnceInOrder() {
+        // Given
+        final String userId = UUID.randomUUID().toString();
+        final List<String> expectedIds = saveTokensSharingStartDate(userId, null);
+
+        // When
+        final List<Token> result = new ArrayList<>();
+        TokenCursor cursor = null;
+        List<Token> page;
+        do {
+            page = tokenRepository.getTokensByUserIdAfter(userId, cursor, 2);
+            result.addAll(page);
+            cursor = page.isEmpty() ? null : TokenCursor.after(page.get(page.size() - 1));
+        } while (!page.isEmpty());
+
+        // Then
+        assertThat(result).extracting(Token::getId).containsExactlyElementsOf(expectedIds);
+    }
+
+    @Test
+    public void getTokensByUserIdAfter_whenCursorIdIsNotAnObjectId_shouldThrowInvalidCursorException() {
+        // Given
+        final TokenCursor cursor = new TokenCursor(new Date(), "not-an-object-id");
+
+        // When / Then
+        assertThatExceptionOfType(InvalidCursorException.class)
+                .isThrownBy(() -> tokenRepository.getTokensByUserIdAfter(UUID.randomUUID().toString(), cursor, 3));
+    }
+
+    @Test
+    public void streamTokenSummariesByUserIdAfter_shouldNotLoadTokenValues() {
+        // Given
+        final String userId = UUID.randomUUID().toString();
+        final ArrayList<Token> tokens = getTokens(userId);
+        tokens.forEach(token -> tokenRepository.save(token));
+
+        // When
+        final List<Token> result = new ArrayList<>();
+        try (CloseableIterator<Token> iterator = tokenRepository.streamTokenSummariesByUserIdAfter(userId, null, 5)) {
+            iterator.forEachRemaining(result::add);
+        }
+
+        // Then
+        assertThat(result).hasSize(5);
+        assertThat(result).extracting(Token::getValue).containsOnly((String) null);
+        assertThat(result).extracting(Token::getLabel).isSubsetOf(tokens.stream().map(Token::getLabel).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void streamTokenSummariesByUserIdAfter_whenTokensShareStartDate_shouldStreamEveryTokenOnceInOrder() {
+        // Given
+        final String userId = UUID.randomUUID().toString();
+        final List<String> expectedIds = saveTokensSharingStartDate(userId, new Date(1000000L));
+
+        // When
+        final List<Token> result = new ArrayList<>();
+        TokenCursor cursor = null;
+        List<Token> page;
+        do {
+            page = new ArrayList<>();
+            try (CloseableIterator<Token> iterator = tokenRepository.streamTokenSummariesByUserIdAfter(userId, cursor, 3)) {
+                iterator.forEachRemaining(page::add);
+            }
+            result.addAll(page);
+            cursor = page.isEmpty() ? null : TokenCursor.after(page.get(page.size() - 1));
+        } while (!page.isEmpty());
+
+        // Then
+        assertThat(result).extracting(Token::getId).containsExactlyElementsOf(expectedIds);
+        assertThat(result).extracting(Token::getValue).containsOnly((String) null);
+    }
+
+    @Test
+    public void revokeTokensOfUser_shouldOnlyRevokeOwnedActiveTokensAndReturnCount() {
+        // Given
+        final String userId = UUID.randomUUID().toString();
+        final Token owned = Token.builder().id(UUID.randomUUID().toString()).userId(userId).build();
+        final Token alreadyRevoked = Token.builder().id(UUID.randomUUID().toString()).userId(userId).revoked(true).build();
+        final Token notOwned = Token.builder().id(UUID.randomUUID().toString()).userId(UUID.randomUUID().toString()).build();
+        tokenRepository.save(Arrays.asList(owned, alreadyRevoked, notOwned));
+
+        // When
+        final long result = tokenRepository.revokeTokensOfUser(userId, Arrays.asList(owned.getId(), alreadyRevoked.getId(), notOwned.getId()));
+
+        // Then
+        assertThat(result).isEqualTo(1);
+        assertThat(tokenRepository.findOne(owned.getId()).isRevoked()).isTrue();
+        assertThat(tokenRepository.findOne(notOwned.getId()).isRevoked()).isFalse();
+    }
+
+    @Test
+    public void revokeAllTokensOfUser_shouldRevokeEveryActiveTokenOfUserOnly() {
+        // Given
+        final String userId = UUID.randomUUID().toString();
+        final ArrayList<Token> tokens = getTokens(userId);
+        final ArrayList<Token> otherTokens = getTokens(UUID.randomUUID().toString());
+        tokenRepository.save(tokens);
+        tokenRepository.save(otherTokens);
+
+        // When
+        final long result = tokenRepository.revokeAllTokensOfUser(userId);
+
+        // Then
+        assertThat(result).isEqualTo(tokens.size());
+        assertThat(tokenRepository.findAll()).filteredOn(Token::isRevoked).extracting(Token::getUserId).containsOnly(userId);
+    }
+
+    @Test
+    public void recordTokenUsages_shouldKeepLatestUseDateAndAddUseCounts() {
+        // Given
+        final Token token = tokenRepository.save(Token.builder().userId(UUID.randomUUID().toString()).build());
+        final Date earlier = new Date(1000000L);
+        final Date later = new Date(2000000L);
+
+        // When
+        tokenRepository.recordTokenUsages(Arrays.asList(
+                TokenUsage.builder().tokenId(token.getId()).lastUsed(later).useCount(3).build(),
+                TokenUsage.builder().tokenId(new ObjectId().toHexString()).lastUsed(later).useCount(1).build()
+        ));
+        tokenRepository.recordTokenUsages(Collections.singletonList(
+                TokenUsage.builder().tokenId(token.getId()).lastUsed(earlier).useCount(2).build()
+        ));
+
+        // Then
+        final Token result = tokenRepository.findOne(token.getId());
+        assertThat(result.getLastUsed()).isEqualTo(later);
+        assertThat(result.getUseCount()).isEqualTo(5);
+        assertThat(tokenRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void getRecentlyUsedTokens_shouldReturnUnrevokedTokensByMostRecentUse() {
+        // Given
+        final String userId = UUID.randomUUID().toString();
+        final Token old = Token.builder().userId(userId).value("old").lastUsed(new Date(1000L)).build();
+        final Token recent = Token.builder().userId(userId).value("recent").lastUsed(new Date(3000L)).build();
+        final Token revoked = Token.builder().userId(userId).value("revoked").lastUsed(new Date(4000L)).revoked(true).build();
+        final Token unused = Token.builder().userId(userId).value("unused").build();
+        tokenRepository.save(Arrays.asList(old, recent, revoked, unused));
+
+        // When
+        final List<Token> result = tokenRepository.getRecentlyUsedTokens(2);
+
+        // Then
+        assertThat(result).extracting(Token::getValue).containsExactly("recent", "old");
+    }
+
+    /**
+     * Saves 4 tokens with the given start date and 3 later ones, in reverse id order, and returns the ids in listing
+     * order. The ids are generated ObjectIds, as in production.
+     */
+    private List<String> saveTokensSharingStartDate(String userId, Date sharedDate) {
+        final List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            ids.add(new ObjectId().toHexString());
+        }
+        for (int i = ids.size() - 1; i >= 0; i--) {
+            tokenRepository.save(Token.builder()
+                    .id(ids.get(i))
+                    .userId(userId)
+                    .label(UUID.randomUUID().toString())
+                    .value(UUID.randomUUID().toString())
+                    .startDate(i < 4 ? sharedDate : new Date(2000000L + i))
+                    .build());
+        }
+        getTokens(UUID.randomUUID().toString()).forEach(token -> tokenRepository.save(token));
+        return ids;
+    }
+
     private ArrayList<Token> getTokens(String userId) {
         ArrayList<Token> list = new ArrayList<>();
         for (int i = 0; i < 10; i++) {
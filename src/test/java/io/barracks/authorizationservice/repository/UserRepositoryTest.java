@@ -115,4 +115,48 @@ public class UserRepositoryTest {
         assertThat(result.get().getStatus()).isEqualTo(status);
     }
 
+    @Test
+    public void resetUserPassword_whenUserDoesNotExist_shouldReturnFalse() {
+        // Given
+        final String email = "unknown@barracks.io";
+
+        // When
+        final boolean result = userRepository.resetUserPassword(email, "password");
+
+        // Then
+        assertThat(result).isFalse();
+    }
+
+    @Test
+    public void resetUserPassword_whenUserIsActive_shouldOnlyUpdatePassword() {
+        // Given
+        final User user = UserUtils.getUser().toBuilder().status(UserStatus.ACTIVE).build();
+        final String password = "password";
+        userRepository.save(user);
+
+        // When
+        final boolean result = userRepository.resetUserPassword(user.getEmail(), password);
+
+        // Then
+        assertThat(result).isTrue();
+        assertThat(userRepository.findOne(user.getId())).isEqualTo(user.toBuilder().encryptedPassword(password).build());
+    }
+
+    @Test
+    public void resetUserPassword_whenUserIsPendingVerification_shouldUpdatePasswordAndStatus() {
+        // Given
+        final User user = UserUtils.getUser().toBuilder().status(UserStatus.EMAIL_VERIFICATION_PENDING).build();
+        final String password = "password";
+        userRepository.save(user);
+
+        // When
+        final boolean result = userRepository.resetUserPassword(user.getEmail(), password);
+
+        // Then
+        assertThat(result).isTrue();
+        assertThat(userRepository.findOne(user.getId())).isEqualTo(
+                user.toBuilder().encryptedPassword(password).status(UserStatus.SUBSCRIPTION_PENDING).build()
+        );
+    }
+
 }
@@ -24,7 +24,10 @@
 
 package io.barracks.authorizationservice.rest;
 
+import io.barracks.authorizationservice.audit.AuditLog;
+import io.barracks.authorizationservice.exception.BarracksAuthenticationException;
 import io.barracks.authorizationservice.manager.UserManager;
+import io.barracks.authorizationservice.model.AuditEventType;
 import io.barracks.authorizationservice.model.User;
 import io.barracks.authorizationservice.rest.entity.DeviceAuthenticationEntity;
 import io.barracks.authorizationservice.utils.UserUtils;
@@ -33,8 +36,10 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -44,6 +49,9 @@ public class DeviceAuthenticationResourceTest {
     @Mock
     private UserManager userManager;
 
+    @Mock
+    private AuditLog auditLog;
+
     @InjectMocks
     private DeviceAuthenticationResource deviceAuthenticationResource;
 
@@ -53,14 +61,31 @@ public class DeviceAuthenticationResourceTest {
         final String apiKey = "apiKey";
         final User savedUser = UserUtils.getUser();
         DeviceAuthenticationEntity deviceAuthenticationEntity = new DeviceAuthenticationEntity(apiKey);
+        final MockHttpServletRequest request = new MockHttpServletRequest();
         when(userManager.getUserByApiKey(apiKey)).thenReturn(savedUser);
 
         // When
-        final User result = deviceAuthenticationResource.authenticateDevice(deviceAuthenticationEntity);
+        final User result = deviceAuthenticationResource.authenticateDevice(deviceAuthenticationEntity, request);
 
         // Then
         verify(userManager).getUserByApiKey(apiKey);
+        verify(auditLog).record(AuditEventType.DEVICE_AUTHENTICATION_SUCCESS, savedUser.getId(), request.getRemoteAddr());
         assertThat(result).isEqualTo(savedUser);
     }
 
+    @Test
+    public void authenticateDevice_whenUserDoesNotExist_shouldAuditFailureWithoutApiKey() throws Exception {
+        // Given
+        final String apiKey = "apiKey";
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        when(userManager.getUserByApiKey(apiKey)).thenThrow(new BarracksAuthenticationException());
+
+        // When
+        final Throwable thrown = catchThrowable(() -> deviceAuthenticationResource.authenticateDevice(new DeviceAuthenticationEntity(apiKey), request));
+
+        // Then
+        assertThat(thrown).isInstanceOf(BarracksAuthenticationException.class);
+        verify(auditLog).record(AuditEventType.DEVICE_AUTHENTICATION_FAILURE, null, request.getRemoteAddr());
+    }
+
 }
\ No newline at end of file
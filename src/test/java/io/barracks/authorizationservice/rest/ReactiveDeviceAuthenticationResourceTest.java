@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.rest;
+
+import io.barracks.authorizationservice.audit.AuditLog;
+import io.barracks.authorizationservice.exception.BarracksAuthenticationException;
+import io.barracks.authorizationservice.manager.ReactiveUserManager;
+import io.barracks.authorizationservice.model.AuditEventType;
+import io.barracks.authorizationservice.model.User;
+import io.barracks.authorizationservice.rest.entity.DeviceAuthenticationEntity;
+import io.barracks.authorizationservice.utils.UserUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReactiveDeviceAuthenticationResourceTest {
+
+    @Mock
+    private ReactiveUserManager reactiveUserManager;
+
+    @Mock
+    private AuditLog auditLog;
+
+    @InjectMocks
+    private ReactiveDeviceAuthenticationResource reactiveDeviceAuthenticationResource;
+
+    @Test
+    public void authenticateDevice_whenUserExists_shouldCompleteWithUser() {
+        // Given
+        final String apiKey = "apiKey";
+        final User savedUser = UserUtils.getUser();
+        final CompletableFuture<User> lookup = new CompletableFuture<>();
+        when(reactiveUserManager.getUserByApiKey(apiKey)).thenReturn(lookup);
+
+        // When
+        final DeferredResult<User> result = reactiveDeviceAuthenticationResource.authenticateDevice(new DeviceAuthenticationEntity(apiKey), new MockHttpServletRequest());
+
+        // Then
+        verify(reactiveUserManager).getUserByApiKey(apiKey);
+        assertThat(result.hasResult()).isFalse();
+        lookup.complete(savedUser);
+        assertThat(result.getResult()).isEqualTo(savedUser);
+        verify(auditLog).record(AuditEventType.DEVICE_AUTHENTICATION_SUCCESS, savedUser.getId(), "127.0.0.1");
+    }
+
+    @Test
+    public void authenticateDevice_whenUserDoesNotExist_shouldCompleteWithAuthenticationError() {
+        // Given
+        final String apiKey = "apiKey";
+        final CompletableFuture<User> lookup = new CompletableFuture<>();
+        when(reactiveUserManager.getUserByApiKey(apiKey)).thenReturn(lookup);
+
+        // When
+        final DeferredResult<User> result = reactiveDeviceAuthenticationResource.authenticateDevice(new DeviceAuthenticationEntity(apiKey), new MockHttpServletRequest());
+        lookup.completeExceptionally(new CompletionException(new BarracksAuthenticationException()));
+
+        // Then
+        verify(reactiveUserManager).getUserByApiKey(apiKey);
+        assertThat(result.getResult()).isInstanceOf(BarracksAuthenticationException.class);
+        verify(auditLog).record(AuditEventType.DEVICE_AUTHENTICATION_FAILURE, null, "127.0.0.1");
+    }
+
+}
@@ -24,10 +24,16 @@
 
 package io.barracks.authorizationservice.rest;
 
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
 import io.barracks.authorizationservice.manager.TokenManager;
+import io.barracks.authorizationservice.model.CursorPage;
 import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.TokenCursor;
+import io.barracks.authorizationservice.model.TokenRevocation;
 import io.barracks.authorizationservice.model.User;
 import io.barracks.authorizationservice.rest.entity.TokenEntity;
+import io.barracks.authorizationservice.rest.entity.TokenRevocationEntity;
 import io.barracks.authorizationservice.security.BarracksUserDetails;
 import io.barracks.authorizationservice.security.UserAuthentication;
 import io.barracks.authorizationservice.utils.TokenUtils;
@@ -43,13 +49,17 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.PagedResources;
 import org.springframework.hateoas.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Collections;
-import java.util.UUID;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -131,6 +141,95 @@ public class TokenResourceTest {
         assertThat(result).isEqualTo(expected);
     }
 
+    @Test
+    public void getTokensWithCursor_whenLimitIsTooLarge_shouldCapItAndReturnManagerPage() {
+        // Given
+        final String cursor = "cursor";
+        final CursorPage<Token> expected = CursorPage.<Token>builder().content(Collections.singletonList(TokenUtils.getToken())).build();
+        when(manager.getTokensForUser(user, cursor, TokenResource.MAX_CURSOR_PAGE_SIZE, true)).thenReturn(expected);
+
+        // When
+        final CursorPage<Token> result = tokenResource.getTokens(auth, cursor, 1000, true);
+
+        // Then
+        verify(manager).getTokensForUser(user, cursor, TokenResource.MAX_CURSOR_PAGE_SIZE, true);
+        assertThat(result).isEqualTo(expected);
+    }
+
+    @Test
+    public void getTokenSummaries_whenMoreTokensThanLimit_shouldStreamCompactPageWithNextCursor() throws Exception {
+        // Given
+        final Token token1 = TokenUtils.getToken().toBuilder().value(null).startDate(new Date(1234567890L)).build();
+        final Token token2 = TokenUtils.getToken().toBuilder().value(null).build();
+        final Token token3 = TokenUtils.getToken().toBuilder().value(null).build();
+        final TestCloseableIterator tokens = new TestCloseableIterator(Arrays.asList(token1, token2, token3));
+        when(manager.streamTokenSummariesForUser(user, null, 2)).thenReturn(tokens);
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // When
+        final ResponseEntity<StreamingResponseBody> result = tokenResource.getTokenSummaries(auth, null, 2);
+        result.getBody().writeTo(outputStream);
+
+        // Then
+        verify(manager).streamTokenSummariesForUser(user, null, 2);
+        final DocumentContext json = JsonPath.parse(outputStream.toString("UTF-8"));
+        assertThat(json.<List<String>>read("$.content[*].id")).containsExactly(token1.getId(), token2.getId());
+        assertThat(json.<String>read("$.content[0].startDate")).isEqualTo("1970-01-15T06:56:07.890Z");
+        assertThat(json.<List<String>>read("$.content[*].value")).isEmpty();
+        assertThat(json.<List<Integer>>read("$.content[*].useCount")).containsOnly((int) token1.getUseCount());
+        assertThat(TokenCursor.decode(json.read("$.next"))).isEqualTo(TokenCursor.after(token2));
+        assertThat(tokens.closed).isTrue();
+    }
+
+    @Test
+    public void getTokenSummaries_whenLastPage_shouldStreamCompactPageWithoutNextCursor() throws Exception {
+        // Given
+        final Token token = TokenUtils.getToken().toBuilder().value(null).build();
+        final TestCloseableIterator tokens = new TestCloseableIterator(Collections.singletonList(token));
+        when(manager.streamTokenSummariesForUser(user, "cursor", 20)).thenReturn(tokens);
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // When
+        final ResponseEntity<StreamingResponseBody> result = tokenResource.getTokenSummaries(auth, "cursor", 20);
+        result.getBody().writeTo(outputStream);
+
+        // Then
+        final DocumentContext json = JsonPath.parse(outputStream.toString("UTF-8"));
+        assertThat(result.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON_UTF8);
+        assertThat(json.<List<String>>read("$.content[*].id")).containsExactly(token.getId());
+        assertThat(json.<Map<String, Object>>read("$")).doesNotContainKey("next");
+        assertThat(tokens.closed).isTrue();
+    }
+
+    @Test
+    public void revokeTokens_whenAllIsFine_shouldCallManagerWithCurrentUserAndReturnCounts() {
+        // Given
+        final TokenRevocationEntity entity = TokenRevocationEntity.builder().id("1").id("2").build();
+        final TokenRevocation expected = TokenRevocation.builder().requested(2).revoked(2L).build();
+        when(manager.revokeTokensOfUser(user, entity.getIds())).thenReturn(expected);
+
+        // When
+        final TokenRevocation result = tokenResource.revokeTokens(entity, auth);
+
+        // Then
+        verify(manager).revokeTokensOfUser(user, entity.getIds());
+        assertThat(result).isEqualTo(expected);
+    }
+
+    @Test
+    public void revokeAllTokens_whenAllIsFine_shouldCallManagerWithCurrentUserAndReturnCount() {
+        // Given
+        final TokenRevocation expected = TokenRevocation.builder().revoked(3L).build();
+        when(manager.revokeAllTokensOfUser(user)).thenReturn(expected);
+
+        // When
+        final TokenRevocation result = tokenResource.revokeAllTokens(auth);
+
+        // Then
+        verify(manager).revokeAllTokensOfUser(user);
+        assertThat(result).isEqualTo(expected);
+    }
+
     @Test
     public void revokeToken_whenAllIsFine_shouldCallManagerAndReturnRevokedTokenOfCurrentUser() {
         // Given
@@ -145,4 +244,28 @@ public class TokenResourceTest {
         assertThat(result).isEqualTo(token);
     }
 
+    private static class TestCloseableIterator implements CloseableIterator<Token> {
+        private final Iterator<Token> delegate;
+        private boolean closed;
+
+        TestCloseableIterator(List<Token> tokens) {
+            this.delegate = tokens.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public Token next() {
+            return delegate.next();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
 }
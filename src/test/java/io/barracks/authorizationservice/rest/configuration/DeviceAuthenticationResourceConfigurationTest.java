@@ -43,6 +43,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.UUID;
 
 import static org.mockito.Mockito.*;
@@ -72,7 +73,7 @@ public class DeviceAuthenticationResourceConfigurationTest {
         final DeviceAuthenticationEntity entity = new DeviceAuthenticationEntity(user.getApiKey());
         final ArgumentCaptor<DeviceAuthenticationEntity> argumentCaptorForMyObject = ArgumentCaptor.forClass(DeviceAuthenticationEntity.class);
 
-        doReturn(user).when(deviceAuthenticationResource).authenticateDevice(argumentCaptorForMyObject.capture());
+        doReturn(user).when(deviceAuthenticationResource).authenticateDevice(argumentCaptorForMyObject.capture(), any(HttpServletRequest.class));
 
         // When
         final ResultActions result = mvc.perform(
@@ -83,7 +84,7 @@ public class DeviceAuthenticationResourceConfigurationTest {
         );
 
         // Then
-        verify(deviceAuthenticationResource).authenticateDevice(argumentCaptorForMyObject.capture());
+        verify(deviceAuthenticationResource).authenticateDevice(argumentCaptorForMyObject.capture(), any(HttpServletRequest.class));
         result.andExpect(status().isOk())
                 .andDo(document(
                         "authenticate",
@@ -103,7 +104,7 @@ public class DeviceAuthenticationResourceConfigurationTest {
         final User savedUser = UserUtils.getUser();
         final DeviceAuthenticationEntity deviceAuthenticationEntity = new DeviceAuthenticationEntity(apiKey);
         final String requestContent = objectMapper.writeValueAsString(deviceAuthenticationEntity);
-        doReturn(savedUser).when(deviceAuthenticationResource).authenticateDevice(deviceAuthenticationEntity);
+        doReturn(savedUser).when(deviceAuthenticationResource).authenticateDevice(eq(deviceAuthenticationEntity), any(HttpServletRequest.class));
 
         // When
         final ResultActions result = mvc.perform(
@@ -113,7 +114,7 @@ public class DeviceAuthenticationResourceConfigurationTest {
         );
 
         // Then
-        verify(deviceAuthenticationResource).authenticateDevice(deviceAuthenticationEntity);
+        verify(deviceAuthenticationResource).authenticateDevice(eq(deviceAuthenticationEntity), any(HttpServletRequest.class));
         result.andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
                 .andExpect(jsonPath("$.firstName").value(savedUser.getFirstName()))
@@ -143,7 +144,7 @@ public class DeviceAuthenticationResourceConfigurationTest {
         final String apiKey = UUID.randomUUID().toString();
         final DeviceAuthenticationEntity deviceAuthenticationEntity = new DeviceAuthenticationEntity(apiKey);
         final String requestContent = objectMapper.writeValueAsString(deviceAuthenticationEntity);
-        doThrow(BarracksAuthenticationException.class).when(deviceAuthenticationResource).authenticateDevice(deviceAuthenticationEntity);
+        doThrow(BarracksAuthenticationException.class).when(deviceAuthenticationResource).authenticateDevice(eq(deviceAuthenticationEntity), any(HttpServletRequest.class));
 
         // When
         final ResultActions result = mvc.perform(
@@ -153,7 +154,7 @@ public class DeviceAuthenticationResourceConfigurationTest {
         );
 
         // Then
-        verify(deviceAuthenticationResource).authenticateDevice(deviceAuthenticationEntity);
+        verify(deviceAuthenticationResource).authenticateDevice(eq(deviceAuthenticationEntity), any(HttpServletRequest.class));
         result.andExpect(status().isUnauthorized());
     }
 
@@ -27,10 +27,13 @@ package io.barracks.authorizationservice.rest.configuration;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import io.barracks.authorizationservice.exception.UnknownTokenException;
+import io.barracks.authorizationservice.model.CursorPage;
 import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.TokenRevocation;
 import io.barracks.authorizationservice.model.User;
 import io.barracks.authorizationservice.rest.TokenResource;
 import io.barracks.authorizationservice.rest.entity.TokenEntity;
+import io.barracks.authorizationservice.rest.entity.TokenRevocationEntity;
 import io.barracks.authorizationservice.security.UserAuthentication;
 import io.barracks.authorizationservice.utils.PageableHelper;
 import io.barracks.authorizationservice.utils.TokenUtils;
@@ -48,23 +51,30 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.hateoas.PagedResources;
 import org.springframework.hateoas.Resource;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.UUID;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.Mockito.*;
 import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
 import static org.springframework.restdocs.payload.PayloadDocumentation.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -124,7 +134,9 @@ public class TokenResourceConfigurationTest {
                                 fieldWithPath("label").description("The token's label that was used to create it."),
                                 fieldWithPath("value").description("The token's value"),
                                 fieldWithPath("startDate").description("The token's date, which is equal to the moment it was created."),
-                                fieldWithPath("revoked").description("Indicates if the token is revoked or not")
+                                fieldWithPath("revoked").description("Indicates if the token is revoked or not"),
+                                fieldWithPath("lastUsed").description("The last time the token was used to authenticate, recorded with a delay of a few seconds").optional(),
+                                fieldWithPath("useCount").description("The number of authentications made with the token")
                         )
                 ));
     }
@@ -165,6 +177,8 @@ public class TokenResourceConfigurationTest {
                                 fieldWithPath("_embedded.tokens[].value").description("The token's value"),
                                 fieldWithPath("_embedded.tokens[].startDate").description("The token's creation date"),
                                 fieldWithPath("_embedded.tokens[].revoked").description("Indicates if the token is revoked or not"),
+                                fieldWithPath("_embedded.tokens[].lastUsed").description("The last time the token was used to authenticate").optional(),
+                                fieldWithPath("_embedded.tokens[].useCount").description("The number of authentications made with the token"),
                                 fieldWithPath("_links").ignored(),
                                 fieldWithPath("page").ignored()
                         )
@@ -199,7 +213,9 @@ public class TokenResourceConfigurationTest {
                                 fieldWithPath("label").description("The token's label."),
                                 fieldWithPath("value").description("The token's value."),
                                 fieldWithPath("startDate").description("The token's date, which is equal to the moment it was created."),
-                                fieldWithPath("revoked").description("Indicates if the token is revoked or not")
+                                fieldWithPath("revoked").description("Indicates if the token is revoked or not"),
+                                fieldWithPath("lastUsed").description("The last time the token was used to authenticate, recorded with a delay of a few seconds").optional(),
+                                fieldWithPath("useCount").description("The number of authentications made with the token")
                         )
                 ));
     }
@@ -254,6 +270,94 @@ public class TokenResourceConfigurationTest {
                 .andExpect(jsonPath("$._embedded.tokens").doesNotExist());
     }
 
+    @Test
+    public void getTokensWithCursor_whenCursorIsProvided_shouldCallCursorEndpointAndReturnFlatPage() throws Exception {
+        //Given
+        final Token token = TokenUtils.getToken();
+        final CursorPage<Token> expected = CursorPage.<Token>builder()
+                .content(Collections.singletonList(token))
+                .next("next")
+                .build();
+        doReturn(expected).when(tokenResource).getTokens(auth, "", 20, false);
+
+        // When
+        final ResultActions result = mvc.perform(
+                MockMvcRequestBuilders.get("/tokens")
+                        .accept(MediaType.APPLICATION_JSON_UTF8)
+                        .param("cursor", "")
+                        .principal(auth)
+        );
+
+        //Then
+        verify(tokenResource).getTokens(auth, "", 20, false);
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0]").value(IsMapContaining.hasEntry("id", token.getId())))
+                .andExpect(jsonPath("$.next").value("next"))
+                .andExpect(jsonPath("$.total").doesNotExist());
+    }
+
+    @Test
+    public void getTokenSummaries_whenCompactViewIsRequested_shouldCallCompactEndpointEvenWithCursor() throws Exception {
+        //Given
+        final StreamingResponseBody body = outputStream -> outputStream.write("{\"content\":[]}".getBytes(StandardCharsets.UTF_8));
+        doReturn(ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).body(body))
+                .when(tokenResource).getTokenSummaries(auth, "cursor", 20);
+
+        // When
+        final MvcResult started = mvc.perform(
+                MockMvcRequestBuilders.get("/tokens")
+                        .accept(MediaType.APPLICATION_JSON_UTF8)
+                        .param("view", "compact")
+                        .param("cursor", "cursor")
+                        .principal(auth)
+        ).andExpect(request().asyncStarted()).andReturn();
+        started.getAsyncResult();
+
+        //Then
+        verify(tokenResource).getTokenSummaries(auth, "cursor", 20);
+        verify(tokenResource, never()).getTokens(any(), anyString(), anyInt(), anyBoolean());
+        assertThat(started.getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(started.getResponse().getContentAsString()).isEqualTo("{\"content\":[]}");
+    }
+
+    @Test
+    public void revokeTokens_whenIdsAreProvided_shouldCallResourceAndReturnCounts() throws Exception {
+        // Given
+        final TokenRevocationEntity entity = TokenRevocationEntity.builder().id("1").id("2").build();
+        doReturn(TokenRevocation.builder().requested(2).revoked(1L).build()).when(tokenResource).revokeTokens(entity, auth);
+
+        // When
+        final ResultActions result = mvc.perform(
+                MockMvcRequestBuilders.put("/tokens/revoke")
+                        .accept(MediaType.APPLICATION_JSON_UTF8)
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content("{\"ids\":[\"1\",\"2\"]}")
+                        .principal(auth)
+        );
+
+        // Then
+        verify(tokenResource).revokeTokens(entity, auth);
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.requested").value(2))
+                .andExpect(jsonPath("$.revoked").value(1));
+    }
+
+    @Test
+    public void revokeTokens_whenIdsAreMissing_shouldReturnBadRequest() throws Exception {
+        // When
+        final ResultActions result = mvc.perform(
+                MockMvcRequestBuilders.put("/tokens/revoke")
+                        .accept(MediaType.APPLICATION_JSON_UTF8)
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content("{}")
+                        .principal(auth)
+        );
+
+        // Then
+        result.andExpect(status().isBadRequest());
+    }
+
     @Test
     public void postToken_whenAllIsFine_shouldCreateToken() throws Exception {
         // Given
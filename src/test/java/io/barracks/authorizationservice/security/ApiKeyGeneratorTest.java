@@ -26,6 +26,15 @@ package io.barracks.authorizationservice.security;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class ApiKeyGeneratorTest {
@@ -43,4 +52,28 @@ public class ApiKeyGeneratorTest {
         assertThat(key1).isNotNull().isNotEmpty().isNotEqualTo(key2);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void generate_whenCalledConcurrently_shouldGenerateUniqueKeysWithTheSharedRandom() throws Exception {
+        // Given
+        final ApiKeyGenerator apiKeyGenerator = new ApiKeyGenerator();
+        final List<Callable<String>> generations = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            generations.add(apiKeyGenerator::generate);
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When
+        final Set<String> keys = new HashSet<>();
+        try {
+            for (Future<String> key : executor.invokeAll(generations)) {
+                keys.add(key.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then
+        assertThat(keys).hasSize(1000).allMatch(key -> key.matches("[0-9a-f]{64}"));
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.barracks.authorizationservice.security.jwt;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RateLimitedLoggerTest {
+
+    private static final String FORMAT = "Failure from '{}' with '{}'";
+
+    @Mock
+    private Logger logger;
+
+    private final AtomicLong clock = new AtomicLong();
+    private RateLimitedLogger rateLimitedLogger;
+
+    @Before
+    public void setUp() {
+        when(logger.isWarnEnabled()).thenReturn(true);
+        rateLimitedLogger = new RateLimitedLogger(logger, 2, 1, TimeUnit.SECONDS, clock::get);
+    }
+
+    @Test
+    public void warn_whenUnderLimit_shouldLogEveryMessage() {
+        // When
+        rateLimitedLogger.warn(FORMAT, "a", "b");
+        rateLimitedLogger.warn(FORMAT, "c", "d");
+
+        // Then
+        verify(logger).warn(FORMAT, "a", "b");
+        verify(logger).warn(FORMAT, "c", "d");
+    }
+
+    @Test
+    public void warn_whenOverLimit_shouldSuppressMessagesUntilNextInterval() {
+        // When
+        rateLimitedLogger.warn(FORMAT, "a", "b");
+        rateLimitedLogger.warn(FORMAT, "c", "d");
+        rateLimitedLogger.warn(FORMAT, "e", "f");
+        rateLimitedLogger.warn(FORMAT, "g", "h");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        rateLimitedLogger.warn(FORMAT, "i", "j");
+
+        // Then
+        verify(logger, never()).warn(FORMAT, "e", "f");
+        verify(logger, never()).warn(FORMAT, "g", "h");
+        verify(logger).warn("{} similar warnings were suppressed", 2L);
+        verify(logger).warn(FORMAT, "i", "j");
+    }
+
+    @Test
+    public void warn_whenWarnIsDisabled_shouldNotLog() {
+        // Given
+        when(logger.isWarnEnabled()).thenReturn(false);
+
+        // When
+        rateLimitedLogger.warn(FORMAT, "a", "b");
+
+        // Then
+        verify(logger).isWarnEnabled();
+        verifyNoMoreInteractions(logger);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.security.jwt;
+
+import io.barracks.authorizationservice.audit.AuditLog;
+import io.barracks.authorizationservice.metrics.AuthenticationMetrics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StatelessLoginFilterTest {
+
+    @Mock
+    private TokenAuthenticationService tokenAuthenticationService;
+
+    @Mock
+    private UserDetailsService userDetailsService;
+
+    @Mock
+    private AuthenticationManager authenticationManager;
+
+    @Mock
+    private AuditLog auditLog;
+
+    private StatelessLoginFilter filter;
+
+    @Before
+    public void setUp() {
+        filter = new StatelessLoginFilter(
+                "/login", tokenAuthenticationService, userDetailsService, authenticationManager, auditLog, new AuthenticationMetrics(60000L)
+        );
+    }
+
+    @Test
+    public void attemptAuthentication_shouldReadCredentialsOfEachRequest() throws Exception {
+        // Given
+        final ArgumentCaptor<Authentication> loginToken = ArgumentCaptor.forClass(Authentication.class);
+        when(authenticationManager.authenticate(any(Authentication.class))).thenAnswer(invocation -> invocation.getArguments()[0]);
+
+        // When
+        filter.attemptAuthentication(login("{\"username\":\"joe@dalton.fw\",\"password\":\"first\"}"), new MockHttpServletResponse());
+        filter.attemptAuthentication(login("{\"username\":\"jack@dalton.fw\",\"password\":\"second\"}"), new MockHttpServletResponse());
+
+        // Then
+        verify(authenticationManager, times(2)).authenticate(loginToken.capture());
+        assertThat(loginToken.getAllValues())
+                .extracting(Authentication::getPrincipal, Authentication::getCredentials)
+                .containsExactly(
+                        tuple("joe@dalton.fw", "first"),
+                        tuple("jack@dalton.fw", "second")
+                );
+        assertThat(loginToken.getAllValues()).allMatch(token -> token instanceof UsernamePasswordAuthenticationToken);
+    }
+
+    private MockHttpServletRequest login(String body) {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+}
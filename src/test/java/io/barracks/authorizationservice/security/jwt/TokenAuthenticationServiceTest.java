@@ -26,15 +26,21 @@ package io.barracks.authorizationservice.security.jwt;
 
 import io.barracks.authorizationservice.exception.BarracksAuthenticationException;
 import io.barracks.authorizationservice.manager.TokenManager;
+import io.barracks.authorizationservice.manager.TokenUsageRecorder;
 import io.barracks.authorizationservice.manager.UserManager;
+import io.barracks.authorizationservice.metrics.AuthenticationMetrics;
 import io.barracks.authorizationservice.model.Token;
 import io.barracks.authorizationservice.model.User;
 import io.barracks.authorizationservice.utils.UserUtils;
+import org.assertj.core.api.Condition;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.Authentication;
 
 import java.util.Date;
 import java.util.UUID;
@@ -42,8 +48,7 @@ import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
 public class TokenAuthenticationServiceTest {
@@ -56,12 +61,17 @@ public class TokenAuthenticationServiceTest {
     @Mock
     private UserManager userManager;
 
+    @Mock
+    private TokenUsageRecorder tokenUsageRecorder;
+
     private TokenHandler tokenHandler;
+    private AuthenticationMetrics authenticationMetrics;
     private TokenAuthenticationService tokenAuthenticationService;
 
     @Before
     public void setUp() {
-        tokenAuthenticationService = new TokenAuthenticationService(tokenManager, userManager);
+        authenticationMetrics = new AuthenticationMetrics(60000);
+        tokenAuthenticationService = new TokenAuthenticationService(tokenManager, userManager, tokenUsageRecorder, authenticationMetrics);
         tokenHandler = new TokenHandler(UUID.randomUUID().toString());
     }
 
@@ -76,15 +86,14 @@ public class TokenAuthenticationServiceTest {
                 .userId(user.getEmail())
                 .value(token).build();
 
-        when(tokenManager.getTokenExpirationDate(token)).thenReturn(null);
-        when(tokenManager.getTokenByValue(token)).thenReturn(barracksToken);
+        when(tokenManager.getCachedTokenByValue(token)).thenReturn(barracksToken);
 
         // When
-        Boolean validity = tokenAuthenticationService.isValidToken(token, user);
+        Boolean validity = tokenAuthenticationService.isValidToken(token, null, user);
 
         //Then
-        verify(tokenManager).getTokenExpirationDate(token);
-        verify(tokenManager).getTokenByValue(token);
+        verify(tokenManager).getCachedTokenByValue(token);
+        verify(tokenUsageRecorder).record(barracksToken.getId());
         assertThat(validity).isTrue();
     }
 
@@ -95,13 +104,11 @@ public class TokenAuthenticationServiceTest {
         final Date expiration = new Date(new Date().getTime() + TimeUnit.DAYS.toMillis(1L));
         final String token = tokenHandler.createTokenForEmail(user.getEmail(), expiration);
 
-        when(tokenManager.getTokenExpirationDate(token)).thenReturn(expiration);
-
         // When
-        Boolean validity = tokenAuthenticationService.isValidToken(token, user);
+        Boolean validity = tokenAuthenticationService.isValidToken(token, expiration, user);
 
         //Then
-        verify(tokenManager).getTokenExpirationDate(token);
+        verifyZeroInteractions(tokenManager, tokenUsageRecorder);
         assertThat(validity).isTrue();
     }
 
@@ -111,16 +118,14 @@ public class TokenAuthenticationServiceTest {
         final User user = UserUtils.getUser();
         final String token = tokenHandler.createTokenForEmail(user.getEmail());
 
-        when(tokenManager.getTokenExpirationDate(token)).thenReturn(null);
-        when(tokenManager.getTokenByValue(token)).thenReturn(null);
+        when(tokenManager.getCachedTokenByValue(token)).thenReturn(null);
 
         //Then When
         assertThatExceptionOfType(BarracksAuthenticationException.class)
                 .isThrownBy(() ->
-                        tokenAuthenticationService.isValidToken(token, user)
+                        tokenAuthenticationService.isValidToken(token, null, user)
                 );
-        verify(tokenManager).getTokenExpirationDate(token);
-        verify(tokenManager).getTokenByValue(token);
+        verify(tokenManager).getCachedTokenByValue(token);
     }
 
     @Test
@@ -134,16 +139,14 @@ public class TokenAuthenticationServiceTest {
                 .revoked(true)
                 .build();
 
-        when(tokenManager.getTokenExpirationDate(value)).thenReturn(null);
-        when(tokenManager.getTokenByValue(value)).thenReturn(revokedToken);
+        when(tokenManager.getCachedTokenByValue(value)).thenReturn(revokedToken);
 
         //Then When
         assertThatExceptionOfType(BarracksAuthenticationException.class)
                 .isThrownBy(() ->
-                        tokenAuthenticationService.isValidToken(value, user)
+                        tokenAuthenticationService.isValidToken(value, null, user)
                 );
-        verify(tokenManager).getTokenExpirationDate(value);
-        verify(tokenManager).getTokenByValue(value);
+        verify(tokenManager).getCachedTokenByValue(value);
     }
 
     @Test
@@ -152,9 +155,86 @@ public class TokenAuthenticationServiceTest {
         final String token = UUID.randomUUID().toString();
 
         // When
-        Boolean validity = tokenAuthenticationService.isValidToken(token, null);
+        Boolean validity = tokenAuthenticationService.isValidToken(token, null, null);
 
         //Then
         assertThat(validity).isFalse();
     }
+
+    @Test
+    public void getAuthentication_whenNoTokenIsProvided_shouldThrowExceptionWithoutLookup() {
+        // Given
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+
+        // When / Then
+        assertThat(tokenAuthenticationService.hasAuthenticationToken(request)).isFalse();
+        assertThatExceptionOfType(BarracksAuthenticationException.class)
+                .isThrownBy(() -> tokenAuthenticationService.getAuthentication(request));
+        verifyZeroInteractions(tokenManager, userManager);
+    }
+
+    @Test
+    public void getAuthentication_whenTokenIsMalformed_shouldThrowStacklessExceptionWithoutParsing() {
+        // Given
+        final String token = "not-a-jwt";
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-AUTH-TOKEN", token);
+        when(tokenManager.isWellFormedToken(token)).thenReturn(false);
+
+        // When / Then
+        assertThatExceptionOfType(BarracksAuthenticationException.class)
+                .isThrownBy(() -> tokenAuthenticationService.getAuthentication(request))
+                .has(new Condition<>((BarracksAuthenticationException e) -> e.getStackTrace().length == 0, "Exception has no stack trace"));
+        verify(tokenManager).isWellFormedToken(token);
+        verifyNoMoreInteractions(tokenManager);
+        verifyZeroInteractions(userManager);
+    }
+
+    @Test
+    public void getAuthentication_whenTokenIsValid_shouldParseTokenOnlyOnce() {
+        // Given
+        final User user = UserUtils.getUser();
+        final Date expiration = new Date(new Date().getTime() + TimeUnit.DAYS.toMillis(1L));
+        final String token = tokenHandler.createTokenForEmail(user.getEmail(), expiration);
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-AUTH-TOKEN", token);
+        when(tokenManager.isWellFormedToken(token)).thenReturn(true);
+        when(tokenManager.parseToken(token)).thenReturn(tokenHandler.parseClaims(token));
+        when(userManager.getCachedUserByEmail(user.getEmail())).thenReturn(user);
+
+        // When
+        final Authentication result = tokenAuthenticationService.getAuthentication(request);
+
+        // Then
+        verify(tokenManager).parseToken(token);
+        verify(tokenManager, never()).getTokenExpirationDate(token);
+        verify(tokenManager, never()).getEmailFromToken(token);
+        assertThat(result.getName()).isEqualTo(user.getEmail());
+    }
+
+    @Test
+    public void getAuthentication_whenApiTokenIsRevoked_shouldRecordStagesByTokenTypeAndOutcome() {
+        // Given
+        final User user = UserUtils.getUser();
+        final String token = tokenHandler.createTokenForEmail(user.getEmail());
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-AUTH-TOKEN", token);
+        when(tokenManager.isWellFormedToken(token)).thenReturn(true);
+        when(tokenManager.parseToken(token)).thenReturn(tokenHandler.parseClaims(token));
+        when(userManager.getCachedUserByEmail(user.getEmail())).thenReturn(user);
+        when(tokenManager.getCachedTokenByValue(token)).thenReturn(Token.builder().value(token).revoked(true).build());
+
+        // When
+        assertThatExceptionOfType(BarracksAuthenticationException.class)
+                .isThrownBy(() -> tokenAuthenticationService.getAuthentication(request));
+
+        // Then
+        assertThat(authenticationMetrics.metrics().stream().filter(metric -> metric.getName().endsWith(".count")).map(Metric::getName))
+                .containsOnly(
+                        "auth.latency.token.parse.api.success.count",
+                        "auth.latency.token.user_lookup.api.success.count",
+                        "auth.latency.token.revocation_check.api.failure.count",
+                        "auth.latency.token.total.api.failure.count"
+                );
+    }
 }
@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.security.jwt;
+
+import io.jsonwebtoken.SignatureException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class TokenHandlerTest {
+
+    private final TokenHandler tokenHandler = new TokenHandler("secret");
+
+    @Test
+    public void parseEmailFromToken_whenCalledConcurrently_shouldParseEachTokenWithTheSharedParser() throws Exception {
+        // Given
+        final List<Callable<Boolean>> parses = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            final String email = "user" + i + "@barracks.io";
+            final String token = tokenHandler.createTokenForEmail(email);
+            parses.add(() -> {
+                for (int j = 0; j < 100; j++) {
+                    if (!email.equals(tokenHandler.parseEmailFromToken(token))) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When
+        final List<Future<Boolean>> results;
+        try {
+            results = executor.invokeAll(parses);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then
+        for (Future<Boolean> result : results) {
+            assertThat(result.get()).isTrue();
+        }
+    }
+
+    @Test
+    public void parseEmailFromToken_whenTokenIsSignedWithAnotherSecret_shouldRejectItAfterValidTokens() {
+        // Given
+        final String otherToken = new TokenHandler("other").createTokenForEmail("user@barracks.io");
+        tokenHandler.parseEmailFromToken(tokenHandler.createTokenForEmail("user@barracks.io"));
+
+        // When / Then
+        assertThatExceptionOfType(SignatureException.class).isThrownBy(() -> tokenHandler.parseEmailFromToken(otherToken));
+    }
+
+}
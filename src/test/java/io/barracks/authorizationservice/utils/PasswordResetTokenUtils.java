@@ -40,7 +40,9 @@ public class PasswordResetTokenUtils {
                 .id(UUID.randomUUID().toString())
                 .token(UUID.randomUUID().toString())
                 .userEmail("testPassReset@barracks.io")
+                .creationDate(new Date())
                 .expiryDate(Date.from(LocalDateTime.now().plusHours(24).toInstant(ZoneOffset.UTC)))
+                .dedupKey("testPassReset@barracks.io/" + UUID.randomUUID())
                 .build();
         assertThat(passwordResetToken).hasNoNullFieldsOrProperties();
         return passwordResetToken;
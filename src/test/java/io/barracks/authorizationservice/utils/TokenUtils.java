@@ -25,6 +25,7 @@
 package io.barracks.authorizationservice.utils;
 
 import io.barracks.authorizationservice.model.Token;
+import org.bson.types.ObjectId;
 
 import java.util.Date;
 import java.util.UUID;
@@ -34,12 +35,14 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class TokenUtils {
     public static Token getToken() {
         final Token token = Token.builder()
-                .id(UUID.randomUUID().toString())
+                .id(new ObjectId().toHexString())
                 .userId(UUID.randomUUID().toString())
                 .label(UUID.randomUUID().toString())
                 .value(UUID.randomUUID().toString())
                 .startDate(new Date())
                 .revoked(false)
+                .lastUsed(new Date())
+                .useCount(1)
                 .build();
         assertThat(token).hasNoNullFieldsOrProperties();
         return token;
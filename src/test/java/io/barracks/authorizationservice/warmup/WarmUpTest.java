@@ -0,0 +1,145 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Barracks Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.barracks.authorizationservice.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.barracks.authorizationservice.cache.AuthenticationCache;
+import io.barracks.authorizationservice.cache.HotKeySnapshotStore;
+import io.barracks.authorizationservice.mail.PasswordConfirmAccountMailer;
+import io.barracks.authorizationservice.mail.PasswordResetMailer;
+import io.barracks.authorizationservice.model.PasswordResetToken;
+import io.barracks.authorizationservice.model.Token;
+import io.barracks.authorizationservice.model.User;
+import io.barracks.authorizationservice.repository.TokenRepository;
+import io.barracks.authorizationservice.repository.UserRepository;
+import io.barracks.authorizationservice.security.jwt.TokenHandler;
+import io.barracks.authorizationservice.utils.UserUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class WarmUpTest {
+
+    @Mock
+    private MongoOperations mongoOperations;
+
+    @Mock
+    private PasswordResetMailer passwordResetMailer;
+
+    @Mock
+    private PasswordConfirmAccountMailer passwordConfirmAccountMailer;
+
+    @Mock
+    private TokenRepository tokenRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private AuthenticationCache authenticationCache;
+
+    @Mock
+    private HotKeySnapshotStore hotKeySnapshotStore;
+
+    @InjectMocks
+    private WarmUp warmUp;
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(warmUp, "tokenHandler", new TokenHandler("secret"));
+        ReflectionTestUtils.setField(warmUp, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(warmUp, "enabled", true);
+        ReflectionTestUtils.setField(warmUp, "iterations", 10);
+        ReflectionTestUtils.setField(warmUp, "mongoConnections", 2);
+    }
+
+    @Test
+    public void run_whenAllStepsSucceed_shouldExerciseHotPathsAndBecomeReady() throws Exception {
+        // Given
+        final ReadinessMvcEndpoint endpoint = new ReadinessMvcEndpoint(new ReadinessEndpoint(warmUp));
+        final Object before = endpoint.invoke();
+
+        // When
+        warmUp.run();
+
+        // Then
+        assertThat(((ResponseEntity<?>) before).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(((ResponseEntity<?>) endpoint.invoke()).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(warmUp.getSteps()).containsOnlyKeys("jwt", "jackson", "templates", "mongo", "restore");
+        assertThat(warmUp.getSteps().values()).allMatch(result -> !result.toString().startsWith("failed"));
+        verify(mongoOperations, times(2)).executeCommand("{ ping: 1 }");
+        verify(passwordResetMailer, times(1)).render(any(PasswordResetToken.class));
+        verify(hotKeySnapshotStore).restore();
+        verifyZeroInteractions(tokenRepository, userRepository, authenticationCache);
+    }
+
+    @Test
+    public void run_whenAStepFails_shouldRecordFailureAndStillBecomeReady() {
+        // Given
+        when(mongoOperations.executeCommand(anyString())).thenThrow(new DataAccessResourceFailureException("down"));
+
+        // When
+        warmUp.run();
+
+        // Then
+        assertThat(warmUp.isReady()).isTrue();
+        assertThat(warmUp.getSteps().get("mongo").toString()).startsWith("failed");
+    }
+
+    @Test
+    public void run_whenPreloadIsEnabled_shouldFillAuthenticationCacheFromRecentlyUsedTokens() {
+        // Given
+        ReflectionTestUtils.setField(warmUp, "preloadTokens", 5);
+        final User user = UserUtils.getUser();
+        final Token token = Token.builder().id(UUID.randomUUID().toString()).userId(user.getId()).value("value").build();
+        when(tokenRepository.getRecentlyUsedTokens(5)).thenReturn(Collections.singletonList(token));
+        when(userRepository.findAll(Collections.singleton(user.getId()))).thenReturn(Collections.singletonList(user));
+
+        // When
+        warmUp.run();
+
+        // Then
+        verify(authenticationCache).preloadToken(token);
+        verify(authenticationCache).preloadUser(user);
+        assertThat(warmUp.getSteps().get("preload").toString()).endsWith("1 tokens, 1 users");
+    }
+
+}